@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed;
+
+import org.caleydo.view.domino.api.model.typed.util.SortKeys;
+
+/**
+ * a {@link ITypedComparator}, which is able to materialize its order as primitive {@link SortKeys}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface ISortKeyComparator extends ITypedComparator {
+	/**
+	 * computes the sort keys of the given ids in a single pass, the order of the keys has to be consistent with
+	 * {@link #compare(Object, Object)}
+	 *
+	 * @param ids
+	 *            ids of {@link #getIdType()}, {@link TypedCollections#INVALID_ID} for not mapped ones
+	 * @param size
+	 *            the number of ids to use
+	 * @return the sort keys or null if they can't be computed
+	 */
+	SortKeys toSortKeys(int[] ids, int size);
+}
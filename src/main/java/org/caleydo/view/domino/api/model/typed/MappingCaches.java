@@ -5,89 +5,175 @@
  *******************************************************************************/
 package org.caleydo.view.domino.api.model.typed;
 
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.caleydo.core.id.IDCategory;
 import org.caleydo.core.id.IDMappingManager;
 import org.caleydo.core.id.IDMappingManagerRegistry;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.id.IIDTypeMapper;
 import org.caleydo.core.util.collection.Pair;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheStats;
 
 /**
- * mapping cache utilities
+ * process wide, thread safe mapping cache utilities
  *
  * @author Samuel Gratzl
  *
  */
 public class MappingCaches {
+	private static final int MAX_MAPPERS = 256;
+	private static final int MAX_TABLES = 64;
+
+	/**
+	 * resolved mappers per (source, target) pair, missing mappings aren't cached, as they might be added any time
+	 */
+	private static final Cache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> mappers = CacheBuilder
+			.newBuilder().maximumSize(MAX_MAPPERS).recordStats().build();
+
+	/**
+	 * materialized mapping tables per (source, target) pair, just of existing mappings
+	 */
+	private static final Cache<Pair<IDType, IDType>, MappingTable> tables = CacheBuilder.newBuilder()
+			.maximumSize(MAX_TABLES).recordStats().build();
 
 	/**
-	 * create a mapping cache for converting to a fix source or targets assert that source or target is null
-	 * 
+	 * incremented by every invalidation, see {@link #version()}
+	 */
+	private static final AtomicInteger version = new AtomicInteger();
+
+	/**
+	 * find a specific mapper using the shared cache
+	 *
+	 * @param from
+	 * @param to
+	 * @return the mapper or null if there is none
+	 */
+	public static IIDTypeMapper<Integer, Integer> findMapper(final IDType from, final IDType to) {
+		return load(mappers, Pair.make(from, to), new Callable<IIDTypeMapper<Integer, Integer>>() {
+			@Override
+			public IIDTypeMapper<Integer, Integer> call() throws NoMappingException {
+				IIDTypeMapper<Integer, Integer> mapper = resolveMapper(from, to);
+				if (mapper == null)
+					throw NoMappingException.INSTANCE;
+				return mapper;
+			}
+		});
+	}
+
+	/**
+	 * returns the shared materialized {@link MappingTable} for the given pair, which resolves each source id at most
+	 * once
+	 *
 	 * @param source
 	 * @param target
 	 * @return
 	 */
-	public static LoadingCache<IDType, IIDTypeMapper<Integer, Integer>> create(IDType source, IDType target) {
-		return CacheBuilder.newBuilder().build(new MapperCache(source, target));
+	public static MappingTable table(final IDType source, final IDType target) {
+		MappingTable table = load(tables, Pair.make(source, target), new Callable<MappingTable>() {
+			@Override
+			public MappingTable call() throws NoMappingException {
+				IIDTypeMapper<Integer, Integer> mapper = findMapper(source, target);
+				if (mapper == null)
+					throw NoMappingException.INSTANCE;
+				return new MappingTable(source, target, mapper);
+			}
+		});
+		if (table == null) // not shared, as the mapping might be added later on
+			return new MappingTable(source, target, null);
+		return table;
 	}
 
 	/**
+	 * loads the value through the cache, such that its load statistics are recorded
 	 *
-	 * @return a generic cache for creating a mapper
+	 * @return the value or null if there is no mapping, which isn't cached
 	 */
-	public static LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> create() {
-		return CacheBuilder.newBuilder().build(new MapperCache2());
+	private static <V> V load(Cache<Pair<IDType, IDType>, V> cache, Pair<IDType, IDType> key, Callable<V> loader) {
+		try {
+			return cache.get(key, loader);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof NoMappingException)
+				return null;
+			throw new IllegalStateException("can't load the mapping of " + key, e.getCause());
+		}
 	}
 
 	/**
-	 * find a specific mapper
-	 *
-	 * @param from
-	 * @param to
-	 * @return
+	 * @return the version of the mappings, which changes with every invalidation, such that dependent caches can
+	 *         detect that they are outdated
 	 */
-	public static IIDTypeMapper<Integer, Integer> findMapper(IDType from, IDType to) {
-		IDMappingManager m = IDMappingManagerRegistry.get().getIDMappingManager(from);
-		if (m == null)
-			return null;
-		return m.getIDTypeMapper(from, to);
+	public static int version() {
+		return version.get();
 	}
 
-	private static final class MapperCache extends CacheLoader<IDType, IIDTypeMapper<Integer, Integer>> {
-		private final IDType source;
-		private final IDType target;
+	/**
+	 * invalidates all cached mappers and materialized {@link MappingTable}s, to be called when the mappings have been
+	 * changed, e.g. a new dataset was loaded
+	 */
+	public static void invalidate() {
+		mappers.invalidateAll();
+		tables.invalidateAll();
+		version.incrementAndGet();
+	}
 
-		private final IDMappingManager manager;
+	/**
+	 * invalidates all cached mappers and {@link MappingTable}s of the given category
+	 *
+	 * @param category
+	 */
+	public static void invalidate(IDCategory category) {
+		invalidate(mappers.asMap().keySet().iterator(), category);
+		invalidate(tables.asMap().keySet().iterator(), category);
+		version.incrementAndGet();
+	}
 
-		public MapperCache(IDType source, IDType target) {
-			this.source = source;
-			this.target = target;
-			assert this.source != null ^ this.target != null; // exactly one is null
-			IDType i = source != null ? source : target;
-			manager = IDMappingManagerRegistry.get().getIDMappingManager(i);
+	private static void invalidate(Iterator<Pair<IDType, IDType>> it, IDCategory category) {
+		while (it.hasNext()) {
+			Pair<IDType, IDType> key = it.next();
+			if (Objects.equals(key.getFirst().getIDCategory(), category)
+					|| Objects.equals(key.getSecond().getIDCategory(), category))
+				it.remove();
 		}
+	}
 
-		@Override
-		public IIDTypeMapper<Integer, Integer> load(IDType key) {
-			IDType s = source == null ? key : source;
-			IDType t = target == null ? key : target;
-			return manager.getIDTypeMapper(s, t);
-		}
+	/**
+	 * @return hit, miss, load time and eviction statistics of the shared mapper cache
+	 */
+	public static CacheStats mapperStats() {
+		return mappers.stats();
 	}
 
-	private static final class MapperCache2 extends CacheLoader<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> {
-		@Override
-		public IIDTypeMapper<Integer, Integer> load(Pair<IDType, IDType> key) throws Exception {
-			assert key != null;
-			IDType source = key.getFirst();
-			IDType target = key.getSecond();
-			IDMappingManager m = IDMappingManagerRegistry.get().getIDMappingManager(source);
-			if (m == null)
-				return null;
-			return m.getIDTypeMapper(source, target);
+	/**
+	 * @return hit, miss, load time and eviction statistics of the shared {@link MappingTable} cache
+	 */
+	public static CacheStats tableStats() {
+		return tables.stats();
+	}
+
+	private static IIDTypeMapper<Integer, Integer> resolveMapper(IDType from, IDType to) {
+		IDMappingManager m = IDMappingManagerRegistry.get().getIDMappingManager(from);
+		if (m == null)
+			return null;
+		return m.getIDTypeMapper(from, to);
+	}
+
+	/**
+	 * signals a missing mapping while loading, such that it isn't cached but counted as load exception
+	 */
+	private static final class NoMappingException extends Exception {
+		private static final long serialVersionUID = 1L;
+		private static final NoMappingException INSTANCE = new NoMappingException();
+
+		private NoMappingException() {
+			super("no mapping", null, false, false);
 		}
 	}
 }
@@ -5,16 +5,11 @@
  *******************************************************************************/
 package org.caleydo.view.domino.api.model.typed;
 
-import static org.caleydo.view.domino.api.model.typed.TypedCollections.mapSingle;
-
 import java.util.Comparator;
 import java.util.Map;
 
 import org.caleydo.core.id.IDType;
-import org.caleydo.core.id.IIDTypeMapper;
-import org.caleydo.core.util.collection.Pair;
 
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 
@@ -60,7 +55,6 @@ public class MappingComparators {
 
 	private static final class Complex implements Comparator<TypedID> {
 		private final ITypedComparator[] comparators;
-		private final LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create();
 
 		/**
 		 * @param comparators
@@ -87,8 +81,7 @@ public class MappingComparators {
 			if (source.equals(target)) // optimize
 				return id.getId();
 
-			IIDTypeMapper<Integer, Integer> m = cache.apply(Pair.make(source, target));
-			return mapSingle(m, id.getId());
+			return MappingCaches.table(source, target).mapSingle(id.getId());
 		}
 	}
 
@@ -130,7 +123,10 @@ public class MappingComparators {
 
 	private static final class Single implements ITypedComparator {
 		private final ITypedComparator[] comparators;
-		private final LoadingCache<IDType, IIDTypeMapper<Integer, Integer>> cache;
+		/**
+		 * the mapping table per comparator, null for the identity
+		 */
+		private final MappingTable[] tables;
 		private final IDType source;
 
 		/**
@@ -139,7 +135,11 @@ public class MappingComparators {
 		public Single(IDType idType, ITypedComparator... comparators) {
 			this.source = idType;
 			this.comparators = comparators;
-			cache = MappingCaches.create(idType, null);
+			this.tables = new MappingTable[comparators.length];
+			for (int i = 0; i < comparators.length; ++i) {
+				IDType target = comparators[i].getIdType();
+				tables[i] = source.equals(target) ? null : MappingCaches.table(source, target);
+			}
 		}
 
 		@Override
@@ -149,24 +149,17 @@ public class MappingComparators {
 
 		@Override
 		public int compare(Integer o1, Integer o2) {
-			for (ITypedComparator c : comparators) {
-				IDType target = c.getIdType();
+			for (int i = 0; i < comparators.length; ++i) {
+				final MappingTable t = tables[i];
 				// map to target type
-				Integer id1 = map(o1, target);
-				Integer id2 = map(o2, target);
-				int r = c.compare(id1, id2);
+				Integer id1 = t == null ? o1 : Integer.valueOf(t.mapSingle(o1));
+				Integer id2 = t == null ? o2 : Integer.valueOf(t.mapSingle(o2));
+				int r = comparators[i].compare(id1, id2);
 				if (r != 0)
 					return r;
 			}
 			return o1.compareTo(o2);
 		}
-
-		private Integer map(Integer id, IDType target) {
-			if (source.equals(target)) // identity
-				return id;
-			IIDTypeMapper<Integer, Integer> m = cache.apply(target);
-			return mapSingle(m, id);
-		}
 	}
 
 }
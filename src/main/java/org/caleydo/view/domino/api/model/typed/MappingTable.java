@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed;
+
+import static org.caleydo.view.domino.api.model.typed.TypedCollections.INVALID_ID;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.caleydo.core.id.IDType;
+import org.caleydo.core.id.IIDTypeMapper;
+
+/**
+ * a materialized, primitive version of a {@link IIDTypeMapper}.
+ *
+ * Every mapped source id is resolved at most once using the mapper. The results are stored in a dense int[] for 1:1
+ * mappings and as compressed sparse rows (offsets + targets) for 1:n mappings. The source ids are indexed using an open
+ * addressing hash table, such that sparse and high ids are cheap, too. Source ids without a mapping aren't memoized, as
+ * their mapping might be added later on, see {@link MappingCaches#invalidate()}.
+ *
+ * use {@link MappingCaches#table(IDType, IDType)} to get a shared instance
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class MappingTable {
+	private final IDType source;
+	private final IDType target;
+	private final IIDTypeMapper<Integer, Integer> mapper;
+	private final boolean one2one;
+
+	/**
+	 * source id index: keys and entry index + 1, 0 = free
+	 */
+	private int[] keys = new int[64];
+	private int[] slots = new int[64];
+	private int entries = 0;
+
+	/**
+	 * 1:1 the target of entry i, 1:n: the targets of the entry i are stored in targets[offsets[i]..offsets[i+1])
+	 */
+	private int[] targets = new int[32];
+	private int[] offsets;
+	private int ntargets = 0;
+
+	MappingTable(IDType source, IDType target, IIDTypeMapper<Integer, Integer> mapper) {
+		this.source = source;
+		this.target = target;
+		this.mapper = mapper;
+		this.one2one = mapper == null || mapper.isOne2OneMapping();
+		this.offsets = one2one ? null : new int[33];
+	}
+
+	/**
+	 * @return the source, see {@link #source}
+	 */
+	public IDType getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the target, see {@link #target}
+	 */
+	public IDType getTarget() {
+		return target;
+	}
+
+	/**
+	 * @return whether any mapping exists at all
+	 */
+	public boolean isMappable() {
+		return mapper != null;
+	}
+
+	public boolean isOne2OneMapping() {
+		return one2one;
+	}
+
+	/**
+	 * @return the number of resolved and mapped source ids
+	 */
+	public synchronized int size() {
+		return entries;
+	}
+
+	/**
+	 * @param id
+	 * @return the first mapped id or {@link TypedCollections#INVALID_ID}
+	 */
+	public synchronized int mapSingle(int id) {
+		return first(entry(id));
+	}
+
+	/**
+	 * @param id
+	 * @return all mapped ids
+	 */
+	public synchronized int[] mapAll(int id) {
+		int e = entry(id);
+		if (e < 0)
+			return new int[0];
+		if (one2one)
+			return new int[] { targets[e] };
+		return Arrays.copyOfRange(targets, offsets[e], offsets[e + 1]);
+	}
+
+	/**
+	 * maps all source ids to their first mapped id or {@link TypedCollections#INVALID_ID}
+	 *
+	 * @param src
+	 * @param dst
+	 */
+	public void mapInto(int[] src, int[] dst) {
+		mapInto(src, 0, dst, 0, src.length);
+	}
+
+	/**
+	 * maps the given range of source ids to their first mapped id or {@link TypedCollections#INVALID_ID}
+	 */
+	public synchronized void mapInto(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+		if (mapper == null) {
+			Arrays.fill(dst, dstPos, dstPos + length, INVALID_ID);
+			return;
+		}
+		for (int i = 0; i < length; ++i)
+			dst[dstPos + i] = first(entry(src[srcPos + i]));
+	}
+
+	private int first(int e) {
+		if (e < 0)
+			return INVALID_ID;
+		if (one2one)
+			return targets[e];
+		int from = offsets[e];
+		return from == offsets[e + 1] ? INVALID_ID : targets[from];
+	}
+
+	/**
+	 * @return the entry index of the given source id, resolving it if needed or -1 if it has no mapping
+	 */
+	private int entry(int id) {
+		int mask = slots.length - 1;
+		int p = hash(id) & mask;
+		while (slots[p] != 0) {
+			if (keys[p] == id)
+				return slots[p] - 1;
+			p = (p + 1) & mask;
+		}
+		int e = resolve(id);
+		if (e < 0) // not memoized, the mapping might be added later on
+			return e;
+		keys[p] = id;
+		slots[p] = e + 1;
+		if (entries * 2 > slots.length)
+			rehash();
+		return e;
+	}
+
+	private int resolve(int id) {
+		Set<Integer> r = mapper == null ? null : mapper.apply(id);
+		if (r == null || r.isEmpty())
+			return -1;
+		final int e = entries++;
+		if (one2one) {
+			targets = ensure(targets, e + 1);
+			targets[e] = r.iterator().next().intValue();
+			return e;
+		}
+		offsets = ensure(offsets, e + 2);
+		targets = ensure(targets, ntargets + r.size());
+		for (Integer t : r)
+			targets[ntargets++] = t.intValue();
+		offsets[e + 1] = ntargets;
+		return e;
+	}
+
+	private static int[] ensure(int[] a, int size) {
+		if (a.length >= size)
+			return a;
+		return Arrays.copyOf(a, Math.max(size, a.length + (a.length >> 1)));
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new int[oldKeys.length * 2];
+		slots = new int[oldSlots.length * 2];
+		int mask = slots.length - 1;
+		for (int i = 0; i < oldSlots.length; ++i) {
+			if (oldSlots[i] == 0)
+				continue;
+			int p = hash(oldKeys[i]) & mask;
+			while (slots[p] != 0)
+				p = (p + 1) & mask;
+			keys[p] = oldKeys[i];
+			slots[p] = oldSlots[i];
+		}
+	}
+
+	private static int hash(int id) {
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("MappingTable [source=");
+		builder.append(source);
+		builder.append(", target=");
+		builder.append(target);
+		builder.append(", one2one=");
+		builder.append(one2one);
+		builder.append("]");
+		return builder.toString();
+	}
+}
@@ -13,28 +13,44 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.caleydo.core.id.IDType;
+import org.caleydo.view.domino.api.model.typed.util.IntTable;
 import org.caleydo.view.domino.api.model.typed.util.RepeatingList;
 
 import com.google.common.base.Function;
-import com.google.common.base.Functions;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 
 /**
- * a {@link IMultiTypedCollection} with an underlying list
- * 
+ * a {@link IMultiTypedCollection} with an underlying list stored column wise, one int[] per {@link IDType}
+ *
  * @author Samuel Gratzl
- * 
+ *
  */
 public class MultiTypedList extends AbstractList<int[]> implements IMultiTypedCollection {
 	private final IDType[] idTypes;
-	private final List<int[]> ids;
+	private final IntTable ids;
+	/**
+	 * special case of a wrapped single {@link TypedList}
+	 */
+	private final TypedList single;
 
 	public MultiTypedList(IDType[] idTypes, List<int[]> ids) {
+		this(idTypes, IntTable.of(idTypes.length, ids, false));
+	}
+
+	public MultiTypedList(IDType[] idTypes, IntTable ids) {
+		assert idTypes.length == ids.depth();
 		this.idTypes = idTypes;
 		this.ids = ids;
+		this.single = null;
+	}
+
+	private MultiTypedList(TypedList single) {
+		this.idTypes = new IDType[] { single.getIdType() };
+		this.ids = null;
+		this.single = single;
 	}
 
 	public int depth() {
@@ -48,36 +64,77 @@ public class MultiTypedList extends AbstractList<int[]> implements IMultiTypedCo
 
 	@Override
 	public List<TypedID> asInhomogenous() {
-		if (ids instanceof Single)
-			return new SingleTypedIDList(((Single) ids).data);
+		if (single != null)
+			return new SingleTypedIDList(single);
 		ImmutableList.Builder<TypedID> b = ImmutableList.builder();
 		for (int i = 0; i < depth(); ++i) {
 			IDType idType = idTypes[i];
 			// select just the slice and map to typed id
-			b.addAll(Collections2.transform(ids, Functions.compose(TypedID.toTypedId(idType), slice(i))));
+			b.addAll(Lists.transform(ids.column(i), TypedID.toTypedId(idType)));
 		}
 		return b.build();
 	}
 
+	/**
+	 * @return a copy of the row at the given index
+	 */
 	@Override
 	public int[] get(int index) {
-		return ids.get(index);
+		if (single != null)
+			return new int[] { single.get(index).intValue() };
+		return ids.row(index);
 	}
 
 	public int get(IDType idType, int index) {
 		int jindex = index(idType);
 		if (jindex < 0)
 			return INVALID_ID;
-		return get(index)[jindex];
+		if (single != null)
+			return single.get(index);
+		return ids.get(index, jindex);
 	}
 
+	/**
+	 * @return a zero copy view of the column of the given {@link IDType}
+	 */
 	public TypedList slice(IDType idType) {
 		int index = index(idType);
 		if (index < 0)
 			return new TypedList(RepeatingList.repeat(INVALID_ID, size()), idType);
-		if (depth() == 1 && ids instanceof Single)
-			return ((Single) ids).data;
-		return new TypedList(Lists.transform(ids, slice(index)), idType);
+		if (single != null)
+			return single;
+		return new TypedList(ids.column(index), idType);
+	}
+
+	/**
+	 * @return a copy of the column of the given {@link IDType}, filled with {@link TypedCollections#INVALID_ID} if it
+	 *         isn't part of this list
+	 */
+	public int[] toIntArray(IDType idType) {
+		int index = index(idType);
+		if (index < 0) {
+			int[] r = new int[size()];
+			Arrays.fill(r, INVALID_ID);
+			return r;
+		}
+		if (single != null)
+			return single.toIntArray();
+		return Arrays.copyOf(ids.columnArray(index), ids.size());
+	}
+
+	/**
+	 * @param rows
+	 *            row indices
+	 * @return a new list with the given rows in the given order
+	 */
+	public MultiTypedList select(int[] rows) {
+		if (single != null) {
+			int[] r = new int[rows.length];
+			for (int i = 0; i < rows.length; ++i)
+				r[i] = single.get(rows[i]).intValue();
+			return single(new TypedList(Ints.asList(r), single.getIdType()));
+		}
+		return new MultiTypedList(idTypes, ids.select(rows));
 	}
 
 	@Override
@@ -85,15 +142,6 @@ public class MultiTypedList extends AbstractList<int[]> implements IMultiTypedCo
 		return idTypes;
 	}
 
-	private Function<int[], Integer> slice(final int index) {
-		return new Function<int[], Integer>() {
-			@Override
-			public Integer apply(int[] input) {
-				return input == null ? null : input[index];
-			}
-		};
-	}
-
 	private int index(IDType idType) {
 		for (int i = 0; i < idTypes.length; ++i)
 			if (idTypes[i] == idType)
@@ -103,43 +151,25 @@ public class MultiTypedList extends AbstractList<int[]> implements IMultiTypedCo
 
 	@Override
 	public int size() {
-		return ids.size();
+		return single != null ? single.size() : ids.size();
 	}
 
 	@Override
 	public Iterator<int[]> iterator() {
-		return Iterators.unmodifiableIterator(ids.iterator());
+		if (single != null)
+			return Iterators.transform(single.iterator(), TO_ROW);
+		return ids.iterator();
 	}
 
-	private static final class Single extends AbstractList<int[]> implements Function<Integer, int[]> {
-		private final TypedList data;
-
-		public Single(TypedList set) {
-			this.data = set;
-		}
-		@Override
-		public int size() {
-			return data.size();
-		}
+	private static final Function<Integer, int[]> TO_ROW = new Function<Integer, int[]>() {
 		@Override
 		public int[] apply(Integer input) {
-			return new int[] {input.intValue()};
-		}
-
-
-		@Override
-		public Iterator<int[]> iterator() {
-			return Iterators.transform(data.iterator(), this);
-		}
-
-		@Override
-		public int[] get(int index) {
-			return apply(data.get(index));
+			return new int[] { input.intValue() };
 		}
-	}
+	};
 
 	public static MultiTypedList single(TypedList set) {
-		return new MultiTypedList(new IDType[] { set.getIdType() }, new Single(set));
+		return new MultiTypedList(set);
 	}
 
 	@Override
@@ -148,7 +178,7 @@ public class MultiTypedList extends AbstractList<int[]> implements IMultiTypedCo
 		builder.append("MultiTypedSet [idTypes=");
 		builder.append(Arrays.toString(idTypes));
 		builder.append(", ids=");
-		for (int[] v : ids)
+		for (int[] v : this)
 			builder.append(Arrays.toString(v)).append(',');
 		builder.append("]");
 		return builder.toString();
@@ -16,46 +16,69 @@ import java.util.List;
 import java.util.Set;
 
 import org.caleydo.core.id.IDType;
-import org.caleydo.core.id.IIDTypeMapper;
 import org.caleydo.core.util.collection.Pair;
+import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
+import org.caleydo.view.domino.api.model.typed.util.IntTable;
 import org.caleydo.view.domino.api.model.typed.util.RepeatingList;
 
 import com.google.common.base.Function;
-import com.google.common.base.Functions;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 
 /**
+ * a set of multi typed ids stored column wise, one int[] per {@link IDType}, duplicate rows are removed by content
+ *
  * @author Samuel Gratzl
  *
  */
 public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedCollection {
 	private final IDType[] idTypes;
-	private final Set<int[]> ids;
+	private final IntTable ids;
+	/**
+	 * special case of a wrapped single {@link TypedSet}
+	 */
+	private final TypedSet single;
 
 	public MultiTypedSet(IDType[] idTypes, Set<int[]> ids) {
+		this(idTypes, IntTable.of(idTypes.length, ids, true));
+	}
+
+	/**
+	 * @param idTypes
+	 * @param ids
+	 *            the table with distinct rows
+	 */
+	public MultiTypedSet(IDType[] idTypes, IntTable ids) {
+		assert idTypes.length == ids.depth();
 		this.idTypes = idTypes;
 		this.ids = ids;
+		this.single = null;
 	}
 
+	private MultiTypedSet(TypedSet single) {
+		this.idTypes = new IDType[] { single.getIdType() };
+		this.ids = null;
+		this.single = single;
+	}
 
 	@Override
 	public MultiTypedList asList() {
-		return new MultiTypedList(idTypes, ImmutableList.copyOf(ids));
+		if (single != null)
+			return MultiTypedList.single(single.asList());
+		return new MultiTypedList(idTypes, ids);
 	}
 
 	@Override
 	public Set<TypedID> asInhomogenous() {
-		if (ids instanceof Single)
-			return new SingleTypedIDSet(((Single) ids).set);
+		if (single != null)
+			return new SingleTypedIDSet(single);
 		ImmutableSet.Builder<TypedID> b = ImmutableSet.builder();
 		for (int i = 0; i < depth(); ++i) {
 			IDType idType = idTypes[i];
 			// select just the slice and map to typed id
-			b.addAll(Collections2.transform(ids, Functions.compose(TypedID.toTypedId(idType), slice(i))));
+			b.addAll(Lists.transform(ids.column(i), TypedID.toTypedId(idType)));
 		}
 		return b.build();
 	}
@@ -68,16 +91,23 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 		int index = index(idType);
 		if (index < 0)
 			return new TypedSet(ImmutableSet.<Integer> of(), idType);
-		if (depth() == 1 && ids instanceof Single)
-			return ((Single) ids).set;
-		return new TypedSet(ImmutableSet.copyOf(Collections2.transform(ids, slice(index))), idType);
+		if (single != null)
+			return single;
+		// a column might contain the same id multiple times
+		BitSetSet r = new BitSetSet();
+		final int[] column = ids.columnArray(index);
+		for (int i = 0; i < ids.size(); ++i)
+			r.add(column[i]);
+		return new TypedSet(r, idType);
 	}
 
 	public TypedList sliceList(IDType idType) {
 		int index = index(idType);
 		if (index < 0)
 			return new TypedList(RepeatingList.repeat(INVALID_ID, size()), idType);
-		return new TypedList(ImmutableList.copyOf(Collections2.transform(ids, slice(index))), idType);
+		if (single != null)
+			return single.asList();
+		return new TypedList(ids.column(index), idType);
 	}
 
 	@Override
@@ -93,15 +123,6 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 		return false;
 	}
 
-	private Function<int[], Integer> slice(final int index) {
-		return new Function<int[], Integer>() {
-			@Override
-			public Integer apply(int[] input) {
-				return input == null ? null : input[index];
-			}
-		};
-	}
-
 	private int index(IDType idType) {
 		for (int i = 0; i < idTypes.length; ++i)
 			if (idTypes[i] == idType)
@@ -111,37 +132,35 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 
 	@Override
 	public int size() {
-		return ids.size();
+		return single != null ? single.size() : ids.size();
 	}
 
 	@Override
-	public Iterator<int[]> iterator() {
-		return Iterators.unmodifiableIterator(ids.iterator());
+	public boolean contains(Object o) {
+		if (!(o instanceof int[]))
+			return false;
+		int[] row = (int[]) o;
+		if (single != null)
+			return row.length == 1 && single.contains(row[0]);
+		return ids.indexOf(row) >= 0;
 	}
 
-	private static final class Single extends AbstractSet<int[]> implements Function<Integer,int[]> {
-		private final TypedSet set;
+	@Override
+	public Iterator<int[]> iterator() {
+		if (single != null)
+			return Iterators.transform(single.iterator(), TO_ROW);
+		return ids.iterator();
+	}
 
-		public Single(TypedSet set) {
-			this.set = set;
-		}
-		@Override
-		public int size() {
-			return set.size();
-		}
+	private static final Function<Integer, int[]> TO_ROW = new Function<Integer, int[]>() {
 		@Override
 		public int[] apply(Integer input) {
-			return new int[] {input.intValue()};
+			return new int[] { input.intValue() };
 		}
-
-		@Override
-		public Iterator<int[]> iterator() {
-			return Iterators.transform(set.iterator(), this);
-		}
-	}
+	};
 
 	public static MultiTypedSet single(TypedSet set) {
-		return new MultiTypedSet(new IDType[] { set.getIdType() }, new Single(set));
+		return new MultiTypedSet(set);
 	}
 
 
@@ -161,13 +180,12 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 		if (toAdd.isEmpty()) // nothing missing
 			return this;
 
-		final LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create();
 		// select the best mapping (in the best case a 1:1 mapping)
-		List<Pair<Integer, IIDTypeMapper<Integer, Integer>>> converters = new ArrayList<>(toAdd.size());
+		List<Pair<Integer, MappingTable>> converters = new ArrayList<>(toAdd.size());
 		for (IDType idType : toAdd) {
-			IDType source = selectBestIDType(cache, idType);
+			IDType source = selectBestIDType(idType);
 			int index = index(source);
-			converters.add(Pair.make(index, cache.getUnchecked(Pair.make(source, idType))));
+			converters.add(Pair.make(index, MappingCaches.table(source, idType)));
 		}
 
 		final int oldLength = idTypes.length;
@@ -177,30 +195,26 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 		for(int i = oldLength; i < newLength; ++i)
 			r[i] = toAdd.get(i-oldLength);
 
-		ImmutableSet.Builder<int[]> r_s = ImmutableSet.builder();
-		for(int[] entry : this.ids) {
-			int[] new_ = Arrays.copyOf(entry, newLength);
+		// the existing columns are shared, as adding columns can't create duplicates
+		final IntTable table = single != null ? new IntTable(new int[][] { Ints.toArray(single) }, single.size())
+				: ids;
+		final int size = table.size();
+		int[][] new_ = new int[toAdd.size()][size];
+		for (int j = 0; j < new_.length; ++j) {
 			// map all missing entries
-			for(int i = oldLength; i < newLength; ++i) {
-				int j = i - oldLength;
-				Pair<Integer, IIDTypeMapper<Integer, Integer>> p = converters.get(j);
-				new_[i] = TypedCollections.mapSingle(p.getSecond(), new_[p.getFirst()]);
-			}
-			r_s.add(new_);
+			Pair<Integer, MappingTable> p = converters.get(j);
+			p.getSecond().mapInto(table.columnArray(p.getFirst()), 0, new_[j], 0, size);
 		}
-		return new MultiTypedSet(r, r_s.build());
+		return new MultiTypedSet(r, table.with(new_));
 	}
 
 	/**
-	 * @param cache
 	 * @param idType
 	 */
-	private IDType selectBestIDType(LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache,
-			IDType idType) {
-		IIDTypeMapper<Integer, Integer> mapper;
+	private IDType selectBestIDType(IDType idType) {
 		for (IDType act : idTypes) {
-			mapper = cache.getUnchecked(Pair.make(act, idType));
-			if (mapper == null)
+			MappingTable mapper = MappingCaches.table(act, idType);
+			if (!mapper.isMappable())
 				continue;
 			if (mapper.isOne2OneMapping())
 				return act;
@@ -215,7 +229,7 @@ public class MultiTypedSet extends AbstractSet<int[]> implements IMultiTypedColl
 		builder.append("MultiTypedSet [idTypes=");
 		builder.append(Arrays.toString(idTypes));
 		builder.append(", ids=");
-		for (int[] v : ids)
+		for (int[] v : this)
 			builder.append(Arrays.toString(v)).append(',');
 		builder.append("]");
 		return builder.toString();
@@ -5,6 +5,7 @@
  *******************************************************************************/
 package org.caleydo.view.domino.api.model.typed;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Set;
@@ -132,4 +133,14 @@ public final class TypedCollections {
 		};
 	}
 
+	/**
+	 * @return the given ids as primitive array in their iteration order, null ids are mapped to -1
+	 */
+	public static int[] toArray(Collection<Integer> ids) {
+		int[] r = new int[ids.size()];
+		int i = 0;
+		for (Integer id : ids)
+			r[i++] = id == null ? -1 : id.intValue();
+		return r;
+	}
 }
@@ -24,15 +24,31 @@ import com.google.common.collect.Sets;
  */
 public class TypedGroupList extends TypedList implements ITypedGroupCollection {
 	private final List<TypedListGroup> groups;
+	/**
+	 * prefix sums of the group sizes, i.e. the exclusive end index of each group
+	 */
+	private final int[] ends;
 
 	public TypedGroupList(List<TypedListGroup> groups) {
 		super(new ConcatedList<>(groups), groups.get(0).getIdType());
 		this.groups = groups;
+		this.ends = toEnds(groups);
 	}
 
 	private TypedGroupList(TypedList list, List<? extends ITypedGroup> groups) {
 		super(list, list.getIdType());
 		this.groups = toGroups(list, groups);
+		this.ends = toEnds(this.groups);
+	}
+
+	private static int[] toEnds(List<TypedListGroup> groups) {
+		int[] r = new int[groups.size()];
+		int c = 0;
+		for (int i = 0; i < r.length; ++i) {
+			c += groups.get(i).size();
+			r[i] = c;
+		}
+		return r;
 	}
 
 	@Override
@@ -91,14 +107,40 @@ public class TypedGroupList extends TypedList implements ITypedGroupCollection {
 		return groups;
 	}
 
+	/**
+	 * @param index
+	 * @return the group containing the element at the given index or null if out of bounds
+	 */
 	public TypedListGroup groupAt(int index) {
-		int acc = 0;
-		for (TypedListGroup group : groups) {
-			acc += group.size();
-			if (acc > index)
-				return group;
+		int g = groupIndexAt(index);
+		return g < 0 ? null : groups.get(g);
+	}
+
+	/**
+	 * @param index
+	 * @return the index of the group containing the element at the given index or -1 if out of bounds
+	 */
+	public int groupIndexAt(int index) {
+		return ConcatedList.groupIndexOf(ends, index);
+	}
+
+	/**
+	 * @param group
+	 *            the group index
+	 * @return the index of the first element of the given group
+	 */
+	public int groupOffset(int group) {
+		return group == 0 ? 0 : ends[group - 1];
+	}
+
+	@Override
+	public int[] toIntArray() {
+		int[] r = new int[size()];
+		for (int i = 0; i < ends.length; ++i) {
+			int[] g = groups.get(i).toIntArray();
+			System.arraycopy(g, 0, r, groupOffset(i), g.length);
 		}
-		return null;
+		return r;
 	}
 
 	@Override
@@ -23,6 +23,10 @@ import com.google.common.collect.Lists;
  */
 public class TypedGroupSet extends TypedSet implements ITypedGroupCollection {
 	private final List<TypedSetGroup> groups;
+	/**
+	 * lazy id to group index lookup, see {@link #groupIndexOf(int)}
+	 */
+	private volatile GroupIndex index;
 
 	public TypedGroupSet(List<TypedSetGroup> groups) {
 		super(union(groups), groups.get(0).getIdType());
@@ -57,6 +61,28 @@ public class TypedGroupSet extends TypedSet implements ITypedGroupCollection {
 		return groups;
 	}
 
+	/**
+	 * @param id
+	 * @return the index of the first group containing the given id or -1 if none
+	 */
+	public int groupIndexOf(int id) {
+		if (groups.size() == 1)
+			return contains(id) ? 0 : -1;
+		GroupIndex index = this.index;
+		if (index == null)
+			this.index = index = new GroupIndex(groups);
+		return index.get(id);
+	}
+
+	/**
+	 * @param id
+	 * @return the first group containing the given id or null if none
+	 */
+	public TypedSetGroup groupOf(int id) {
+		int i = groupIndexOf(id);
+		return i < 0 ? null : groups.get(i);
+	}
+
 	public static TypedGroupSet createUngrouped(TypedSet set) {
 		return new TypedGroupSet(TypedGroups.createUngroupedGroup(set));
 	}
@@ -96,14 +122,12 @@ public class TypedGroupSet extends TypedSet implements ITypedGroupCollection {
 		for (int i = 0; i < ngroups; ++i)
 			gids.add(new BitSetSet());
 		BitSetSet others = new BitSetSet();
-		outer: for (Integer id : sub) {
-			for (int i = 0; i < ngroups; ++i) {
-				if (groups.get(i).contains(id)) {
-					gids.get(i).add(id);
-					continue outer;
-				}
-			}
-			others.add(id);
+		for (Integer id : sub) {
+			int i = groupIndexOf(id.intValue());
+			if (i >= 0)
+				gids.get(i).add(id);
+			else
+				others.add(id);
 		}
 		List<TypedSetGroup> ggroups = new ArrayList<>(ngroups + 1);
 		for (int i = 0; i < ngroups; ++i) {
@@ -120,4 +144,82 @@ public class TypedGroupSet extends TypedSet implements ITypedGroupCollection {
 	}
 
 
+	/**
+	 * id to group index lookup, dense for compact id ranges, else an open addressing hash table
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class GroupIndex {
+		/**
+		 * dense: group index + 1 per id, 0 = none
+		 */
+		private final int[] dense;
+		/**
+		 * hash: keys and group index + 1, 0 = free
+		 */
+		private final int[] keys;
+		private final int[] values;
+
+		GroupIndex(List<TypedSetGroup> groups) {
+			int size = 0;
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (TypedSetGroup g : groups) {
+				size += g.size();
+				for (Integer id : g) {
+					min = Math.min(min, id.intValue());
+					max = Math.max(max, id.intValue());
+				}
+			}
+			if (max < min) { // no ids at all, e.g. just empty groups
+				this.dense = new int[0];
+				this.keys = null;
+				this.values = null;
+			} else if (min >= 0 && max < size * 4L + 64) {
+				this.dense = new int[max + 1];
+				this.keys = null;
+				this.values = null;
+			} else {
+				this.dense = null;
+				int capacity = Integer.highestOneBit(Math.max(8, size) * 2 - 1) << 1;
+				this.keys = new int[capacity];
+				this.values = new int[capacity];
+			}
+			// fill backwards, such that the first group containing an id wins
+			for (int i = groups.size() - 1; i >= 0; --i) {
+				for (Integer id : groups.get(i))
+					put(id.intValue(), i + 1);
+			}
+		}
+
+		private void put(int id, int value) {
+			if (dense != null) {
+				dense[id] = value;
+				return;
+			}
+			final int mask = keys.length - 1;
+			int p = hash(id) & mask;
+			while (values[p] != 0 && keys[p] != id)
+				p = (p + 1) & mask;
+			keys[p] = id;
+			values[p] = value;
+		}
+
+		int get(int id) {
+			if (dense != null)
+				return id < 0 || id >= dense.length ? -1 : dense[id] - 1;
+			final int mask = keys.length - 1;
+			for (int p = hash(id) & mask; values[p] != 0; p = (p + 1) & mask) {
+				if (keys[p] == id)
+					return values[p] - 1;
+			}
+			return -1;
+		}
+
+		private static int hash(int id) {
+			int h = id * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
 }
@@ -17,6 +17,7 @@ import org.caleydo.core.id.IDType;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.primitives.Ints;
 
 /**
  * a reaonly list of integers with their id type
@@ -55,7 +56,14 @@ public class TypedList extends AbstractList<Integer> implements ITypedCollection
 
 	@Override
 	public TypedList subList(int fromIndex, int toIndex) {
-		return new TypedList(super.subList(fromIndex, toIndex), idType);
+		return new TypedList(wrappee.subList(fromIndex, toIndex), idType);
+	}
+
+	/**
+	 * @return a copy of the ids as primitive array, a plain copy if the underlying list is a primitive one
+	 */
+	public int[] toIntArray() {
+		return Ints.toArray(wrappee);
 	}
 
 	/**
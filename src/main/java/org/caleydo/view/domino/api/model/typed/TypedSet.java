@@ -8,19 +8,20 @@ package org.caleydo.view.domino.api.model.typed;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.caleydo.core.data.virtualarray.VirtualArray;
 import org.caleydo.core.id.IDType;
 import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
+import org.caleydo.view.domino.api.model.typed.util.SetSketch;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
@@ -31,8 +32,17 @@ import com.google.common.collect.Sets;
  *
  */
 public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
+	/**
+	 * below this size intersections are computed exactly instead of being estimated
+	 */
+	private static final int EXACT_THRESHOLD = 1 << 14;
+
 	private final Set<Integer> wrappee;
 	private final IDType idType;
+	/**
+	 * lazy approximate sketches of this set along with the {@link MappingCaches#version()} they were mapped with
+	 */
+	private volatile Sketches sketches;
 
 	public TypedSet(Set<Integer> wrappee, IDType idType) {
 		this.wrappee = wrappee instanceof TypedSet ? ((TypedSet) wrappee).wrappee : Preconditions.checkNotNull(wrappee);
@@ -45,7 +55,7 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 	}
 
 	public static TypedSet of(VirtualArray per) {
-		return new TypedSet(BitSetSet.of(per), per.getIdType());
+		return new TypedSet(BitSetSet.of(per).runOptimize(), per.getIdType());
 	}
 
 	@Override
@@ -101,6 +111,23 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 		return wrappee.containsAll(c);
 	}
 
+	/**
+	 * @return a lazy expression starting with this set
+	 */
+	public final TypedSetExpression lazy() {
+		return TypedSetExpression.of(this);
+	}
+
+	/**
+	 * @return the wrapped set, for lazy expressions the materialized one, such that the {@link BitSetSet} fast paths
+	 *         apply
+	 */
+	Set<Integer> data() {
+		if (wrappee instanceof TypedSetExpression.LazySet)
+			return ((TypedSetExpression.LazySet) wrappee).materialized().data();
+		return wrappee;
+	}
+
 	/**
 	 * set intersection
 	 *
@@ -115,10 +142,10 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return new TypedSet(Collections.<Integer> emptySet(), idType);
 
-		if (this.wrappee instanceof BitSetSet)
-			return intersection((BitSetSet) wrappee, that);
-		if (that.wrappee instanceof BitSetSet)
-			return intersection((BitSetSet) that.wrappee, this);
+		if (this.data() instanceof BitSetSet)
+			return intersection((BitSetSet) data(), that);
+		if (that.data() instanceof BitSetSet)
+			return intersection((BitSetSet) that.data(), this);
 
 		Set<Integer> r = ImmutableSet.copyOf(intersectImpl(that));
 		if (r.size() == this.size()) // all shared
@@ -129,9 +156,9 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 	private Set<Integer> intersectImpl(TypedSet that) {
 		Set<Integer> r;
 		if (this.size() < that.size()) { // smaller at the beginning
-			r = Sets.intersection(that.wrappee, this.wrappee);
+			r = Sets.intersection(that.data(), this.data());
 		} else
-			r = Sets.intersection(this.wrappee, that.wrappee);
+			r = Sets.intersection(this.data(), that.data());
 		return r;
 	}
 
@@ -149,11 +176,11 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 			return 0;
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return 0;
-		if (this.wrappee instanceof BitSetSet) {
-			return and((BitSetSet) this.wrappee, that);
+		if (this.data() instanceof BitSetSet) {
+			return and((BitSetSet) this.data(), that);
 		}
-		if (that.wrappee instanceof BitSetSet)
-			return and((BitSetSet) that.wrappee, this);
+		if (that.data() instanceof BitSetSet)
+			return and((BitSetSet) that.data(), this);
 		return intersectImpl(that).size();
 	}
 
@@ -164,10 +191,10 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 			return this;
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return TypedCollections.empty(idType);
-		if (this.wrappee instanceof BitSetSet)
-			return union((BitSetSet) wrappee, that);
-		if (that.wrappee instanceof BitSetSet)
-			return union((BitSetSet) that.wrappee, this);
+		if (this.data() instanceof BitSetSet)
+			return union((BitSetSet) data(), that);
+		if (that.data() instanceof BitSetSet)
+			return union((BitSetSet) that.data(), this);
 
 		Set<Integer> r = ImmutableSet.copyOf(unionImpl(that));
 		if (r.size() == this.size()) // all shared
@@ -180,24 +207,24 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 	public int or(TypedSet that) {
 		if (this.isEmpty()) // return empty
 			return that.size();
-		if (this.isEmpty())
-			return that.size();
+		if (that.isEmpty())
+			return this.size();
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types returning empty set
 			return 0;
-		if (this.wrappee instanceof BitSetSet) {
-			return or((BitSetSet) this.wrappee, that);
+		if (this.data() instanceof BitSetSet) {
+			return or((BitSetSet) this.data(), that);
 		}
-		if (that.wrappee instanceof BitSetSet)
-			return or((BitSetSet) that.wrappee, this);
+		if (that.data() instanceof BitSetSet)
+			return or((BitSetSet) that.data(), this);
 		return unionImpl(that).size();
 	}
 
 	private Set<Integer> unionImpl(TypedSet that) {
 		Set<Integer> r;
 		if (this.size() < that.size()) { // smaller at the beginning
-			r = Sets.union(that.wrappee, this.wrappee);
+			r = Sets.union(that.data(), this.data());
 		} else
-			r = Sets.union(this.wrappee, that.wrappee);
+			r = Sets.union(this.data(), that.data());
 		return r;
 	}
 
@@ -216,55 +243,156 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 		if (this.isEmpty()) // return empty
 			return 0;
 		if (that.isEmpty())
-			return that.size();
+			return this.size();
 		if (!Objects.equals(this.idType, that.idType)) // not matching id types
 			return this.size();
-		if (this.wrappee instanceof BitSetSet) {
-			return without((BitSetSet) this.wrappee, that.wrappee);
+		if (this.data() instanceof BitSetSet) {
+			return without((BitSetSet) this.data(), that.data());
 		}
-		return Sets.difference(this.wrappee, that.wrappee).size();
+		return Sets.difference(this.data(), that.data()).size();
 	}
 
 	public static TypedSet intersection(BitSetSet a, TypedSet b) {
-		if (b.wrappee instanceof BitSetSet) {
-			return new TypedSet(BitSetSet.and(a, ((BitSetSet) b.wrappee)), b.idType);
+		if (b.data() instanceof BitSetSet) {
+			return new TypedSet(BitSetSet.and(a, ((BitSetSet) b.data())), b.idType);
 		}
-		return new TypedSet(ImmutableSet.copyOf(Sets.intersection(b, a)), b.idType); // as the predicate is: in the
-																						// second argument
+		BitSetSet r = new BitSetSet();
+		for (Integer id : b.data())
+			if (a.contains(id))
+				r.add(id);
+		return new TypedSet(r, b.idType);
 	}
 
 	private static TypedSet union(BitSetSet a, TypedSet b) {
-		if (b.wrappee instanceof BitSetSet) {
-			return new TypedSet(BitSetSet.or(a, (BitSetSet) b.wrappee), b.idType);
+		if (b.data() instanceof BitSetSet) {
+			return new TypedSet(BitSetSet.or(a, (BitSetSet) b.data()), b.idType);
 		}
-		return new TypedSet(ImmutableSet.copyOf(Sets.union(b, a)), b.idType); // as the predicate is: in the second
-																				// argument
+		BitSetSet r = new BitSetSet(a);
+		r.addAll(b.data());
+		return new TypedSet(r, b.idType);
 	}
 
 	private static int and(BitSetSet a, Set<Integer> b) {
 		if (b instanceof BitSetSet) {
-			BitSetSet s = BitSetSet.and(a, (BitSetSet) b);
-			return s.size();
+			return BitSetSet.andCardinality(a, (BitSetSet) b);
 		}
 		return Sets.intersection(b, a).size(); // as the predicate is: in the second argument
 	}
 
 	private static int or(BitSetSet a, Set<Integer> b) {
 		if (b instanceof BitSetSet) {
-			BitSetSet s = BitSetSet.or(a, (BitSetSet) b);
-			return s.size();
+			return BitSetSet.orCardinality(a, (BitSetSet) b);
 		}
 		return Sets.union(b, a).size(); // as the predicate is: in the second argument
 	}
 
 	private static int without(BitSetSet a, Set<Integer> b) {
 		if (b instanceof BitSetSet) {
-			BitSetSet s = BitSetSet.andNot(a, (BitSetSet) b);
-			return s.size();
+			return BitSetSet.andNotCardinality(a, (BitSetSet) b);
 		}
 		return Sets.difference(a, b).size(); // as the predicate is: in the second argument
 	}
 
+	/**
+	 * @return the lazily created {@link SetSketch} of this set
+	 */
+	public SetSketch getSketch() {
+		return getSketch(idType);
+	}
+
+	/**
+	 * @param target
+	 * @return the lazily created {@link SetSketch} of this set mapped to the given {@link IDType}
+	 */
+	public SetSketch getSketch(IDType target) {
+		final int version = MappingCaches.version();
+		Sketches s = this.sketches;
+		if (s == null || s.version != version) {
+			synchronized (this) {
+				s = this.sketches;
+				if (s == null || s.version != version) // the mappings have been changed
+					this.sketches = s = new Sketches(version);
+			}
+		}
+		SetSketch r = s.byType.get(target);
+		if (r == null) {
+			r = SetSketch.of(mapTo(target));
+			s.byType.put(target, r);
+		}
+		return r;
+	}
+
+	/**
+	 * sketches per mapped {@link IDType} of a specific {@link MappingCaches#version()}
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class Sketches {
+		private final int version;
+		private final Map<IDType, SetSketch> byType = new ConcurrentHashMap<>(2);
+
+		Sketches(int version) {
+			this.version = version;
+		}
+	}
+
+	/**
+	 * @return the distinct mapped ids of this set
+	 */
+	private Set<Integer> mapTo(IDType target) {
+		if (Objects.equals(idType, target))
+			return wrappee;
+		MappingTable table = MappingCaches.table(idType, target);
+		BitSetSet r = new BitSetSet();
+		if (!table.isMappable())
+			return r;
+		for (Integer id : wrappee)
+			for (int m : table.mapAll(id.intValue()))
+				r.add(m);
+		return r;
+	}
+
+	/**
+	 * @return whether the estimates with the given set are computed exactly, i.e. if both are of the same
+	 *         {@link IDType} and the smaller one, which bounds the cost of {@link #and(TypedSet)}, is small
+	 */
+	private boolean isExact(TypedSet that) {
+		return Objects.equals(this.idType, that.idType) && Math.min(this.size(), that.size()) < EXACT_THRESHOLD;
+	}
+
+	/**
+	 * estimates the number of shared items, exact for small sets
+	 *
+	 * @param that
+	 *            a set of the same or a mappable {@link IDType}
+	 * @return
+	 */
+	public int estimateIntersection(TypedSet that) {
+		if (this.isEmpty() || that.isEmpty())
+			return 0;
+		if (isExact(that))
+			return and(that);
+		return (int) getSketch().intersection(that.getSketch(idType));
+	}
+
+	/**
+	 * estimates the Jaccard similarity |this &cap; that| / |this &cup; that|, exact for small sets
+	 *
+	 * @param that
+	 *            a set of the same or a mappable {@link IDType}
+	 * @return
+	 */
+	public double estimateJaccard(TypedSet that) {
+		if (this.isEmpty() || that.isEmpty())
+			return 0;
+		if (isExact(that)) {
+			int shared = and(that);
+			return shared / (double) (this.size() + that.size() - shared);
+		}
+		return getSketch().jaccard(that.getSketch(idType));
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -302,10 +430,10 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 	 * @return
 	 */
 	public static TypedSet union(Iterable<? extends TypedSet> same) {
-		Builder<Integer> b = ImmutableSet.builder();
+		BitSetSet b = new BitSetSet();
 		for (TypedSet s : same)
 			b.addAll(s.wrappee);
-		return new TypedSet(b.build(), same.iterator().next().getIdType());
+		return new TypedSet(b, same.iterator().next().getIdType());
 
 	}
 
@@ -314,10 +442,11 @@ public class TypedSet extends AbstractSet<Integer> implements ITypedCollection {
 	 * @return
 	 */
 	public static TypedSet intersection(Iterable<? extends TypedSet> same) {
-		Set<Integer> r = new HashSet<>(same.iterator().next());
+		TypedSet first = same.iterator().next();
+		BitSetSet r = new BitSetSet(first.wrappee);
 		for (TypedSet s : same)
-			r.retainAll(s);
-		return new TypedSet(r, same.iterator().next().getIdType());
+			r.retainAll(s.wrappee);
+		return new TypedSet(r, first.getIdType());
 
 	}
 
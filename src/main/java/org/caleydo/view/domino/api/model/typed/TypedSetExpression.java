@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import org.caleydo.core.id.IDType;
+import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+/**
+ * a lazy expression of {@link TypedSet} operations, which is evaluated just if its elements are needed.
+ *
+ * The operands of intersections and unions are reordered by their estimated size, empty operands short circuit the
+ * evaluation and {@link #size()} computes the cardinality of the last operation without materializing it. Both the
+ * size and the materialized result, which is backed by a {@link BitSetSet}, are cached.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public abstract class TypedSetExpression implements IHasIDType {
+	private final IDType idType;
+	/**
+	 * the cached result of {@link #evaluate()}, guarded by this
+	 */
+	private TypedSet result;
+	/**
+	 * the cached result of {@link #size()} or -1 if not yet computed, guarded by this
+	 */
+	private int size = -1;
+
+	TypedSetExpression(IDType idType) {
+		this.idType = idType;
+	}
+
+	public static TypedSetExpression of(TypedSet set) {
+		return new Leaf(set);
+	}
+
+	public static TypedSetExpression intersect(TypedSet... sets) {
+		return new NAry(true, sets[0].getIdType(), toLeaves(sets));
+	}
+
+	public static TypedSetExpression union(TypedSet... sets) {
+		return new NAry(false, sets[0].getIdType(), toLeaves(sets));
+	}
+
+	private static List<TypedSetExpression> toLeaves(TypedSet... sets) {
+		List<TypedSetExpression> r = new ArrayList<>(sets.length);
+		for (TypedSet s : sets)
+			r.add(new Leaf(s));
+		return r;
+	}
+
+	@Override
+	public final IDType getIdType() {
+		return idType;
+	}
+
+	public TypedSetExpression and(TypedSet that) {
+		return and(of(that));
+	}
+
+	public TypedSetExpression and(TypedSetExpression that) {
+		return new NAry(true, idType, operands(true, that));
+	}
+
+	public TypedSetExpression or(TypedSet that) {
+		return or(of(that));
+	}
+
+	public TypedSetExpression or(TypedSetExpression that) {
+		return new NAry(false, idType, operands(false, that));
+	}
+
+	public TypedSetExpression without(TypedSet that) {
+		return without(of(that));
+	}
+
+	public TypedSetExpression without(TypedSetExpression that) {
+		return new Without(this, that);
+	}
+
+	/**
+	 * @return the operands of a flattened operation of this and the given one
+	 */
+	List<TypedSetExpression> operands(boolean and, TypedSetExpression that) {
+		return Arrays.asList(this, that);
+	}
+
+	/**
+	 * @return an upper bound of the size, which is cheap to compute
+	 */
+	public abstract int estimateSize();
+
+	/**
+	 * @return the materialized result
+	 */
+	public final synchronized TypedSet evaluate() {
+		if (result == null)
+			result = evaluateImpl();
+		return result;
+	}
+
+	protected abstract TypedSet evaluateImpl();
+
+	/**
+	 * @return the size of the result, without materializing the result if possible
+	 */
+	public final int size() {
+		synchronized (this) {
+			if (result != null)
+				return result.size();
+			if (size >= 0)
+				return size;
+		}
+		final int s = estimateSize() == 0 ? 0 : sizeImpl();
+		synchronized (this) {
+			size = s;
+		}
+		return s;
+	}
+
+	protected abstract int sizeImpl();
+
+	public final boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return a {@link TypedSet} view of this expression, which evaluates on the first access of its elements but
+	 *         answers its size using {@link #size()}
+	 */
+	public TypedSet asSet() {
+		return new TypedSet(new LazySet(this), idType);
+	}
+
+	/**
+	 * @return the given set backed by a {@link BitSetSet}, such that further operations take the fast path
+	 */
+	static TypedSet toBitSet(TypedSet set) {
+		if (set.isEmpty() || set.data() instanceof BitSetSet)
+			return set;
+		return new TypedSet(new BitSetSet(set.data()), set.getIdType());
+	}
+
+	private static final class Leaf extends TypedSetExpression {
+		private final TypedSet set;
+
+		Leaf(TypedSet set) {
+			super(set.getIdType());
+			this.set = set;
+		}
+
+		@Override
+		public int estimateSize() {
+			return set.size();
+		}
+
+		@Override
+		protected TypedSet evaluateImpl() {
+			return set;
+		}
+
+		@Override
+		protected int sizeImpl() {
+			return set.size();
+		}
+
+		@Override
+		public TypedSet asSet() {
+			return set;
+		}
+
+		@Override
+		public String toString() {
+			return "|" + set.size() + "|";
+		}
+	}
+
+	/**
+	 * n-ary intersection or union
+	 */
+	private static final class NAry extends TypedSetExpression {
+		private final boolean and;
+		private final List<TypedSetExpression> operands;
+		private final boolean compatible;
+
+		NAry(boolean and, IDType idType, List<TypedSetExpression> operands) {
+			super(idType);
+			this.and = and;
+			this.operands = ImmutableList.copyOf(operands);
+			boolean compatible = true;
+			for (TypedSetExpression o : operands)
+				compatible = compatible && Objects.equals(idType, o.getIdType());
+			this.compatible = compatible;
+		}
+
+		@Override
+		List<TypedSetExpression> operands(boolean and, TypedSetExpression that) {
+			if (this.and != and)
+				return super.operands(and, that);
+			List<TypedSetExpression> r = new ArrayList<>(operands);
+			r.add(that);
+			return r;
+		}
+
+		@Override
+		public int estimateSize() {
+			if (!compatible)
+				return 0;
+			if (and) {
+				int r = Integer.MAX_VALUE;
+				for (TypedSetExpression o : operands)
+					r = Math.min(r, o.estimateSize());
+				return r;
+			}
+			long r = 0;
+			for (TypedSetExpression o : operands)
+				r += o.estimateSize();
+			return (int) Math.min(r, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * @return the non trivial operands, the smallest first for intersections, the largest first for unions
+		 */
+		private List<TypedSetExpression> ordered() {
+			List<TypedSetExpression> r = new ArrayList<>(operands.size());
+			for (TypedSetExpression o : operands)
+				if (and || o.estimateSize() > 0)
+					r.add(o);
+			Collections.sort(r, and ? BY_ESTIMATE : Collections.reverseOrder(BY_ESTIMATE));
+			return r;
+		}
+
+		@Override
+		protected TypedSet evaluateImpl() {
+			if (estimateSize() == 0)
+				return TypedCollections.empty(getIdType());
+			List<TypedSetExpression> ordered = ordered();
+			return toBitSet(combine(ordered, ordered.size()));
+		}
+
+		/**
+		 * materializes the combination of the first n operands
+		 */
+		private TypedSet combine(List<TypedSetExpression> ordered, int n) {
+			TypedSet acc = ordered.get(0).evaluate();
+			for (int i = 1; i < n; ++i) {
+				if (and && acc.isEmpty()) // short circuit
+					return acc;
+				TypedSet s = ordered.get(i).evaluate();
+				acc = and ? acc.intersect(s) : acc.union(s);
+			}
+			return acc;
+		}
+
+		@Override
+		protected int sizeImpl() {
+			List<TypedSetExpression> ordered = ordered();
+			final int n = ordered.size();
+			if (n == 1)
+				return ordered.get(0).size();
+			// materialize all but the last one, which is just counted
+			TypedSet acc = combine(ordered, n - 1);
+			if (and && acc.isEmpty())
+				return 0;
+			TypedSet last = ordered.get(n - 1).evaluate();
+			return and ? acc.and(last) : acc.or(last);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder b = new StringBuilder("(");
+			for (TypedSetExpression o : operands)
+				b.append(o).append(and ? " \u2229 " : " \u222a ");
+			b.setLength(b.length() - 3);
+			return b.append(')').toString();
+		}
+	}
+
+	private static final class Without extends TypedSetExpression {
+		private final TypedSetExpression a;
+		private final TypedSetExpression b;
+
+		Without(TypedSetExpression a, TypedSetExpression b) {
+			super(a.getIdType());
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int estimateSize() {
+			return a.estimateSize();
+		}
+
+		@Override
+		protected TypedSet evaluateImpl() {
+			TypedSet ra = a.evaluate();
+			if (ra.isEmpty() || b.estimateSize() == 0)
+				return ra;
+			return toBitSet(ra.difference(b.evaluate()));
+		}
+
+		@Override
+		protected int sizeImpl() {
+			if (b.estimateSize() == 0)
+				return a.size();
+			TypedSet ra = a.evaluate();
+			if (ra.isEmpty())
+				return 0;
+			return ra.without(b.evaluate());
+		}
+
+		@Override
+		public String toString() {
+			return "(" + a + " \u2216 " + b + ")";
+		}
+	}
+
+	private static final Comparator<TypedSetExpression> BY_ESTIMATE = new Comparator<TypedSetExpression>() {
+		@Override
+		public int compare(TypedSetExpression o1, TypedSetExpression o2) {
+			return Integer.compare(o1.estimateSize(), o2.estimateSize());
+		}
+	};
+
+	/**
+	 * set view of an expression
+	 */
+	static final class LazySet extends AbstractSet<Integer> {
+		private final TypedSetExpression expression;
+
+		LazySet(TypedSetExpression expression) {
+			this.expression = expression;
+		}
+
+		/**
+		 * @return the evaluated expression
+		 */
+		TypedSet materialized() {
+			return expression.evaluate();
+		}
+
+		@Override
+		public int size() {
+			return expression.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return expression.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return expression.evaluate().contains(o);
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return Iterators.unmodifiableIterator(expression.evaluate().iterator());
+		}
+	}
+}
@@ -7,17 +7,19 @@ package org.caleydo.view.domino.api.model.typed;
 
 import static org.caleydo.view.domino.api.model.typed.MappingCaches.findMapper;
 import static org.caleydo.view.domino.api.model.typed.TypedCollections.INVALID_ID;
-import static org.caleydo.view.domino.api.model.typed.TypedCollections.mapSingle;
-import static org.caleydo.view.domino.api.model.typed.TypedCollections.toSingleOrInvalid;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
 import org.caleydo.core.data.collection.EDataType;
 import org.caleydo.core.id.IDCategory;
@@ -26,12 +28,12 @@ import org.caleydo.core.id.IDMappingManagerRegistry;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.id.IIDTypeMapper;
 import org.caleydo.core.id.MappingType;
-import org.caleydo.core.util.collection.Pair;
+import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
+import org.caleydo.view.domino.api.model.typed.util.IntTable;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
 import org.caleydo.view.domino.api.model.typed.util.RepeatingList;
+import org.caleydo.view.domino.api.model.typed.util.SortKeys;
 
-import com.google.common.base.Function;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
@@ -75,33 +77,56 @@ public class TypedSets {
 			return MultiTypedSet.single(sets[0]);
 		}
 
-		final LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create();
-
 		if (deep) // expand to all mappable ids
-			sets = expandMapped(sets, cache);
+			sets = expandMapped(sets);
 
 		boolean union = true;
-		return setOperation(sets, union, cache);
+		return setOperation(sets, union);
 	}
 
-	private static MultiTypedSet setOperation(TypedSet[] sets, boolean union,
-			final LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache) {
+	private static MultiTypedSet setOperation(final TypedSet[] sets, final boolean union) {
 		if (sets.length == 0) {
 			return new MultiTypedSet(new IDType[0], Collections.<int[]> emptySet());
 		}
 		final int l = sets.length;
-		Set<List<Integer>> r = new HashSet<>();
 		IDType[] t = new IDType[l];
-		for(int i = 0; i < sets.length; ++i) {
+		long total = 0;
+		for (int i = 0; i < l; ++i) {
 			t[i] = sets[i].getIdType();
-			fill(sets, i, cache, r, union);
+			total += sets[i].size();
+		}
+
+		if (!Parallel.isWorthIt(total)) {
+			IntTable.Builder r = new IntTable.Builder(l, (int) total, true);
+			for (int i = 0; i < l; ++i)
+				fill(sets, i, r, union);
+			return new MultiTypedSet(t, r.build());
 		}
 
-		// convert to right structure
-		ImmutableSet.Builder<int[]> r_s = ImmutableSet.builder();
-		for(List<Integer> ri : r)
-			r_s.add(Ints.toArray(ri));
-		return new MultiTypedSet(t, r_s.build());
+		// compute the rows of each set in parallel and merge them afterwards
+		List<ForkJoinTask<IntTable>> tasks = new ArrayList<>(l);
+		for (int i = 0; i < l; ++i) {
+			final int act_i = i;
+			tasks.add(Parallel.pool().submit(new Callable<IntTable>() {
+				@Override
+				public IntTable call() {
+					IntTable.Builder r = new IntTable.Builder(l, sets[act_i].size(), true);
+					fill(sets, act_i, r, union);
+					return r.build();
+				}
+			}));
+		}
+		IntTable.Builder r = new IntTable.Builder(l, (int) total, true);
+		int[] row = new int[l];
+		for (ForkJoinTask<IntTable> task : tasks) {
+			IntTable part = task.join();
+			for (int k = 0; k < part.size(); ++k) {
+				for (int j = 0; j < l; ++j)
+					row[j] = part.get(k, j);
+				r.add(row);
+			}
+		}
+		return new MultiTypedSet(t, r.build());
 	}
 
 	/**
@@ -121,30 +146,26 @@ public class TypedSets {
 		if (l == 1) { // single id type
 			return MultiTypedSet.single(sets[0]);
 		}
-		final LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create();
-
 		// remove from an idtype all ids which the others can't be mapped to
-		sets = removeNotMapped(sets, cache);
+		sets = removeNotMapped(sets);
 
-		return setOperation(sets, false, cache);
+		return setOperation(sets, false);
 	}
 
 	/**
 	 * @param sets
-	 * @param cache
 	 * @return
 	 */
-	private static TypedSet[] removeNotMapped(TypedSet[] sets,
-			LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache) {
+	private static TypedSet[] removeNotMapped(TypedSet[] sets) {
 		TypedSet[] r = new TypedSet[sets.length];
 		for (int i = 0; i < sets.length; ++i) {
 			TypedSet act = sets[i];
-			Set<Integer> ids = new HashSet<>(act);
+			Set<Integer> ids = new BitSetSet(act);
 			for (int j = 0; j < sets.length; ++j) {
 				if (j == i)
 					continue;
 				TypedSet b = sets[j];
-				IIDTypeMapper<Integer, Integer> b2a = cache.getUnchecked(Pair.make(b.getIdType(), act.getIdType()));
+				IIDTypeMapper<Integer, Integer> b2a = findMapper(b.getIdType(), act.getIdType());
 				Set<Integer> m = b2a == null ? null : b2a.apply(b);
 				if (m == null) // no mapping remove all = no intersection
 					return new TypedSet[0];
@@ -162,11 +183,9 @@ public class TypedSets {
 	 * all ids to all others ids and add missing entries
 	 *
 	 * @param sets
-	 * @param cache
 	 * @return
 	 */
-	private static TypedSet[] expandMapped(TypedSet[] sets,
-			LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache) {
+	private static TypedSet[] expandMapped(TypedSet[] sets) {
 		Set<TypedID> todo = new HashSet<>();
 		Set<TypedID> done = new HashSet<>();
 
@@ -184,7 +203,7 @@ public class TypedSets {
 				IDType s_idType = s.getIdType();
 				if (s_idType == r.getIdType())
 					continue;
-				IIDTypeMapper<Integer, Integer> m = cache.getUnchecked(Pair.make(r.getIdType(), s_idType));
+				IIDTypeMapper<Integer, Integer> m = findMapper(r.getIdType(), s_idType);
 				if (m == null)
 					continue;
 				Set<Integer> apply = m.apply(r.getId());
@@ -247,81 +266,73 @@ public class TypedSets {
 	 *
 	 * @param sets
 	 * @param act_i
-	 * @param cache
 	 * @param r
+	 *            the target row buffer, which copies the given rows
 	 */
-	private static void fill(TypedSet[] sets, int act_i,
-			LoadingCache<Pair<IDType, IDType>, IIDTypeMapper<Integer, Integer>> cache, Set<List<Integer>> r,
-			boolean union) {
+	private static void fill(TypedSet[] sets, int act_i, IntTable.Builder r, boolean union) {
 		TypedSet act = sets[act_i];
 		final int l = sets.length;
-		List<Iterator<Set<Integer>>> mapped = new ArrayList<>(l);
-		final RepeatingList<Set<Integer>> invalidList = RepeatingList.repeat(Collections.<Integer> emptySet(),
-				act.size());
+		@SuppressWarnings("unchecked")
+		Iterator<Set<Integer>>[] mapped = new Iterator[l];
 		for(int i = 0; i < l; ++i) {
+			if (i == act_i) // identity
+				continue;
 			TypedSet s = sets[i];
-			IIDTypeMapper<Integer, Integer> m = cache.getUnchecked(Pair.make(act.getIdType(), s.getIdType()));
+			IIDTypeMapper<Integer, Integer> m = findMapper(act.getIdType(), s.getIdType());
 			Collection<Set<Integer>> m_r = m == null ? null : m.applySeq(act);
-			if (m_r == null) {
-				mapped.add(invalidList.iterator());
-			} else
-				mapped.add(m_r.iterator());
+			mapped[i] = m_r == null ? null : m_r.iterator();
 		}
 
-		List<Set<Integer>> acts = new ArrayList<>(mapped.size());
-		List<Integer> multi = new ArrayList<>();
+		@SuppressWarnings("unchecked")
+		final Set<Integer>[] acts = new Set[l];
+		final int[] multi = new int[l];
+		final int[] singles = new int[l]; // store just the singles, reused as the row buffer
+		final TypedSet[] partOf = union ? null : sets;
 
-		for (int j = 0; j < act.size(); ++j) {
-			next(mapped, acts);
-			multi.clear();
-			int[] singles = new int[l]; // store just the singles
+		for (Iterator<Integer> it = act.iterator(); it.hasNext();) {
+			final int id = it.next().intValue();
+			int nmulti = 0;
 			for (int i = 0; i < l; ++i) {
-				boolean isMulti = acts.get(i).size() > 1;
-				if (isMulti)
-					multi.add(i);
+				if (i == act_i) {
+					singles[i] = id;
+					continue;
+				}
+				Set<Integer> a = mapped[i] == null ? null : mapped[i].next();
+				if (a == null || a.isEmpty())
+					singles[i] = INVALID_ID;
+				else if (a.size() == 1)
+					singles[i] = a.iterator().next();
 				else {
-					Set<Integer> a = acts.get(i);
-					singles[i] = a.isEmpty() ? INVALID_ID : a.iterator().next();
+					acts[i] = a;
+					multi[nmulti++] = i;
 				}
 			}
-			if (multi.isEmpty()) {// just single mappings
-				r.add(Ints.asList(singles));
+			if (nmulti == 0) {// just single mappings
+				r.add(singles);
 			} else {
 				// some multi mappings, we need to create the product of all combinations
-				product(multi, 0, singles, acts, r, union ? null : sets);
+				product(multi, nmulti, 0, singles, acts, r, partOf);
 			}
 		}
 	}
 
-	private static void product(List<Integer> multi, int start, int[] singles, List<Set<Integer>> acts,
-			Set<List<Integer>> r, TypedSet[] partOf) {
-		if (multi.size() <= start) { // flush
-			r.add(Ints.asList(Arrays.copyOf(singles, singles.length)));
+	private static void product(int[] multi, int nmulti, int start, int[] singles, Set<Integer>[] acts,
+			IntTable.Builder r, TypedSet[] partOf) {
+		if (nmulti <= start) { // flush
+			r.add(singles);
 			return;
 		}
-		int next = multi.get(start);
-		Set<Integer> all = acts.get(next);
+		int next = multi[start];
+		Set<Integer> all = acts[next];
 		TypedSet partOfElem = partOf == null ? null : partOf[next];
 		for (Integer ai : all) {
 			if (partOfElem != null && !partOfElem.contains(ai))
 				continue;
 			singles[next] = ai;
-			product(multi, start + 1, singles, acts, r, partOf);
+			product(multi, nmulti, start + 1, singles, acts, r, partOf);
 		}
 	}
 
-	/**
-	 * @param mapped
-	 * @param acts
-	 * @return
-	 */
-	private static List<Set<Integer>> next(List<Iterator<Set<Integer>>> mapped, List<Set<Integer>> acts) {
-		acts.clear();
-		for (Iterator<Set<Integer>> it : mapped)
-			acts.add(it.next());
-		return acts;
-	}
-
 
 	/**
 	 * maps the given inhomogenous input list to a homogenous list using {@link TypedCollections#INVALID_ID} for missing
@@ -336,21 +347,37 @@ public class TypedSets {
 			SingleTypedIDList l = (SingleTypedIDList) in;
 			if (l.getIdType() == target)
 				return l.getData();
-			IIDTypeMapper<Integer, Integer> m = findMapper(l.getIdType(), target);
-			if (m == null) // not mappable all invalid
-				return allInvalid(in, target);
-			Collection<Set<Integer>> r = m.applySeq(l.getData());
-			if (r == null)
+			MappingTable m = MappingCaches.table(l.getIdType(), target);
+			if (!m.isMappable()) // not mappable all invalid
 				return allInvalid(in, target);
+			int[] dst = Ints.toArray(l.getData());
+			m.mapInto(dst, dst);
 			// map result to a list
-			return new TypedList(ImmutableList.copyOf(Collections2.transform(r, toSingleOrInvalid)), target);
+			return new TypedList(Ints.asList(dst), target);
 		}
 		// we have multiple types
-
-		// use a cache for better performance
-		LoadingCache<IDType, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create(null, target);
-
-		return new TypedList(ImmutableList.copyOf(Lists.transform(in, map(cache))), target);
+		int[] dst = new int[in.size()];
+		// use a local cache for better performance
+		Map<IDType, MappingTable> tables = new HashMap<>();
+		int i = 0;
+		for (TypedID id : in) {
+			if (id == null) {
+				dst[i++] = INVALID_ID;
+				continue;
+			}
+			IDType source = id.getIdType();
+			if (source == target) {
+				dst[i++] = id.getId();
+				continue;
+			}
+			MappingTable m = tables.get(source);
+			if (m == null) {
+				m = MappingCaches.table(source, target);
+				tables.put(source, m);
+			}
+			dst[i++] = m.mapSingle(id.getId());
+		}
+		return new TypedList(Ints.asList(dst), target);
 	}
 
 	/**
@@ -395,26 +422,41 @@ public class TypedSets {
 		if (comparators.length == 0 || in.size() <= 1)
 			return in.asList();
 
-		int[][] r = in.toArray(new int[0][]);
-		Arrays.sort(r, MappingComparators.of(in.getIDTypes(), comparators));
-		return new MultiTypedList(in.getIDTypes(), ImmutableList.copyOf(r));
+		final MultiTypedList list = in.asList();
+		SortKeys[] keys = toSortKeys(list, comparators);
+		if (keys == null) { // fallback
+			int[][] r = in.toArray(new int[0][]);
+			Arrays.sort(r, MappingComparators.of(in.getIDTypes(), comparators));
+			return new MultiTypedList(in.getIDTypes(), ImmutableList.copyOf(r));
+		}
+		return list.select(SortKeys.sort(list.size(), keys));
 	}
+
 	/**
-	 * @param cache
-	 * @return
+	 * materializes the sort keys of all comparators followed by the ids itself as tie breaker
+	 *
+	 * @return the keys or null if at least one comparator doesn't support it
 	 */
-	private static Function<TypedID, Integer> map(final LoadingCache<IDType, IIDTypeMapper<Integer, Integer>> cache) {
-		return new Function<TypedID, Integer>() {
-			@Override
-			public Integer apply(TypedID input) {
-				if (input == null)
-					return INVALID_ID;
-				IIDTypeMapper<Integer, Integer> m = cache.getUnchecked(input.getIdType());
-				return mapSingle(m, input.getId());
-			}
-		};
+	private static SortKeys[] toSortKeys(MultiTypedList list, ITypedComparator... comparators) {
+		final IDType[] types = list.getIDTypes();
+		final int size = list.size();
+		List<SortKeys> r = new ArrayList<>(comparators.length + 1);
+		for (ITypedComparator c : comparators) {
+			if (!(c instanceof ISortKeyComparator))
+				return null;
+			if (!Arrays.asList(types).contains(c.getIdType())) // nothing to map
+				continue;
+			SortKeys keys = ((ISortKeyComparator) c).toSortKeys(list.toIntArray(c.getIdType()), size);
+			if (keys == null)
+				return null;
+			r.add(keys);
+		}
+		SortKeys ids = new SortKeys();
+		for (IDType type : types)
+			ids.add(list.toIntArray(type), size, false);
+		r.add(ids);
+		return r.toArray(new SortKeys[0]);
 	}
-
 	private static TypedList allInvalid(List<TypedID> in, IDType target) {
 		return new TypedList(RepeatingList.repeat(INVALID_ID, in.size()), target);
 	}
@@ -7,24 +7,23 @@ package org.caleydo.view.domino.api.model.typed.util;
 
 import java.util.AbstractSet;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterators;
 
 /**
- * a set implementation based on a {@link BitSet}
+ * a set implementation based on a compressed {@link RoaringBitmap}, such that sparse and high ids are cheap, too
  *
  * @author Samuel Gratzl
  *
  */
 public class BitSetSet extends AbstractSet<Integer> {
-	private final BitSet positives;
-	private final BitSet negatives;
+	private final RoaringBitmap bitmap;
 
 	public BitSetSet() {
-		this(new BitSet(), new BitSet());
+		this(new RoaringBitmap());
 	}
 
 	public BitSetSet(Set<Integer> ids) {
@@ -32,12 +31,22 @@ public class BitSetSet extends AbstractSet<Integer> {
 		addAll(ids);
 	}
 
+	public BitSetSet(RoaringBitmap bitmap) {
+		this.bitmap = Preconditions.checkNotNull(bitmap);
+	}
+
 	/**
-	 * @param clone
+	 * @param positives
+	 *            the positive ids
+	 * @param negatives
+	 *            the negated negative ids
 	 */
 	public BitSetSet(BitSet positives, BitSet negatives) {
-		this.positives = positives;
-		this.negatives = negatives;
+		this();
+		for (int i = positives.nextSetBit(0); i >= 0; i = positives.nextSetBit(i + 1))
+			bitmap.add(i);
+		for (int i = negatives.nextSetBit(0); i >= 0; i = negatives.nextSetBit(i + 1))
+			bitmap.add(-i);
 	}
 
 	/**
@@ -51,120 +60,148 @@ public class BitSetSet extends AbstractSet<Integer> {
 		return r;
 	}
 
+	/**
+	 * @return the underlying bitmap, see {@link #bitmap}
+	 */
+	public RoaringBitmap getBitmap() {
+		return bitmap;
+	}
+
+	/**
+	 * compresses consecutive ids, use it for sets that won't be changed anymore
+	 *
+	 * @return this
+	 */
+	public BitSetSet runOptimize() {
+		bitmap.runOptimize();
+		return this;
+	}
+
+	public boolean contains(int i) {
+		return bitmap.contains(i);
+	}
+
 	@Override
 	public boolean contains(Object o) {
 		if (!(o instanceof Integer))
 			return false;
-		final int i = ((Integer) o).intValue();
-		if (i < 0)
-			return negatives.get(-i);
-		return positives.get(i);
+		return bitmap.contains(((Integer) o).intValue());
 	}
 
 	@Override
 	public void clear() {
-		positives.clear();
-		negatives.clear();
+		bitmap.clear();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return positives.isEmpty() && negatives.isEmpty();
+		return bitmap.isEmpty();
 	}
 
 	@Override
 	public boolean remove(Object o) {
-		if (!contains(o))
+		if (!(o instanceof Integer))
 			return false;
-		final int i = ((Integer) o).intValue();
-		if (i < 0)
-			negatives.clear(-i);
-		else
-			positives.clear(i);
-		return true;
+		return bitmap.remove(((Integer) o).intValue());
+	}
+
+	public boolean add(int i) {
+		return bitmap.add(i);
 	}
 
 	@Override
 	public boolean add(Integer e) {
 		Preconditions.checkNotNull(e);
-		if (contains(e))
-			return false;
-		final int i = e.intValue();
-		if (i < 0)
-			negatives.set(-i);
-		else
-			positives.set(i);
-		return true;
+		return bitmap.add(e.intValue());
 	}
 
 	@Override
-	public Iterator<Integer> iterator() {
-		if (positives.isEmpty() && negatives.isEmpty())
-			return Iterators.emptyIterator();
-		if (positives.isEmpty())
-			return new BitSetIterator(negatives, false);
-		if (negatives.isEmpty())
-			return new BitSetIterator(positives, true);
-		return Iterators.concat(new BitSetIterator(negatives, false), new BitSetIterator(positives, true));
+	public boolean addAll(Collection<? extends Integer> c) {
+		if (c instanceof BitSetSet) {
+			int before = size();
+			bitmap.or(((BitSetSet) c).bitmap);
+			return size() != before;
+		}
+		return super.addAll(c);
 	}
 
 	@Override
-	public int size() {
-		return positives.cardinality() + negatives.cardinality();
+	public boolean retainAll(Collection<?> c) {
+		if (c instanceof BitSetSet) {
+			int before = size();
+			bitmap.and(((BitSetSet) c).bitmap);
+			return size() != before;
+		}
+		return super.retainAll(c);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (c instanceof BitSetSet) {
+			int before = size();
+			bitmap.andNot(((BitSetSet) c).bitmap);
+			return size() != before;
+		}
+		return super.removeAll(c);
 	}
 
-	private static class BitSetIterator implements Iterator<Integer> {
-		private final BitSet bitSet;
-		private final boolean forward;
+	@Override
+	public Iterator<Integer> iterator() {
+		return bitmap.iterator();
+	}
 
-		private int i;
+	@Override
+	public int size() {
+		return bitmap.cardinality();
+	}
 
-		public BitSetIterator(BitSet bitSet, boolean forward) {
-			this.bitSet = bitSet;
-			this.forward = forward;
-			this.i = forward ? bitSet.nextSetBit(0) : bitSet.previousSetBit(bitSet.size());
-		}
+	@Override
+	public Object[] toArray() {
+		int[] ids = bitmap.toArray();
+		Object[] r = new Object[ids.length];
+		for (int i = 0; i < ids.length; ++i)
+			r[i] = ids[i];
+		return r;
+	}
 
-		@Override
-		public void remove() {
-			bitSet.clear(forward ? bitSet.previousSetBit(i - 1) : bitSet.nextSetBit(i + 1));
-		}
+	public int[] toIntArray() {
+		return bitmap.toArray();
+	}
 
-		@Override
-		public Integer next() {
-			int bak = i;
-			i = forward ? bitSet.nextSetBit(i + 1) : bitSet.previousSetBit(i - 1);
-			return forward ? bak : -bak;
-		}
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof BitSetSet)
+			return bitmap.equals(((BitSetSet) o).bitmap);
+		return super.equals(o);
+	}
 
-		@Override
-		public boolean hasNext() {
-			return i != -1;
-		}
+	@Override
+	public int hashCode() {
+		return super.hashCode();
 	}
 
 	public static BitSetSet and(BitSetSet a, BitSetSet b) {
-		BitSet p = (BitSet) a.positives.clone();
-		p.and(b.positives);
-		BitSet n = (BitSet) a.negatives.clone();
-		n.and(b.negatives);
-		return new BitSetSet(p, n);
+		return new BitSetSet(RoaringBitmap.and(a.bitmap, b.bitmap));
 	}
 
 	public static BitSetSet or(BitSetSet a, BitSetSet b) {
-		BitSet p = (BitSet) a.positives.clone();
-		p.or(b.positives);
-		BitSet n = (BitSet) a.negatives.clone();
-		n.or(b.negatives);
-		return new BitSetSet(p, n);
+		return new BitSetSet(RoaringBitmap.or(a.bitmap, b.bitmap));
 	}
 
 	public static BitSetSet andNot(BitSetSet a, BitSetSet b) {
-		BitSet p = (BitSet) a.positives.clone();
-		p.andNot(b.positives);
-		BitSet n = (BitSet) a.negatives.clone();
-		n.andNot(b.negatives);
-		return new BitSetSet(p, n);
+		return new BitSetSet(RoaringBitmap.andNot(a.bitmap, b.bitmap));
+	}
+
+	public static int andCardinality(BitSetSet a, BitSetSet b) {
+		return RoaringBitmap.andCardinality(a.bitmap, b.bitmap);
+	}
+
+	public static int orCardinality(BitSetSet a, BitSetSet b) {
+		return RoaringBitmap.orCardinality(a.bitmap, b.bitmap);
+	}
+
+	public static int andNotCardinality(BitSetSet a, BitSetSet b) {
+		return RoaringBitmap.andNotCardinality(a.bitmap, b.bitmap);
 	}
 
 }
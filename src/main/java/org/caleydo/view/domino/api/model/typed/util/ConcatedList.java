@@ -45,13 +45,51 @@ public final class ConcatedList<T> extends AbstractList<T> {
 
 	@Override
 	public T get(int index) {
-		for (int i = 0; i < ends.length; ++i) {
-			if (index < ends[i]) {
-				final List<T> l = groups.get(i);
-				return l.get(index - ends[i] + l.size());
-			}
+		final int i = groupIndexOf(index);
+		if (i < 0)
+			throw new IndexOutOfBoundsException();
+		return groups.get(i).get(index - groupOffset(i));
+	}
+
+	/**
+	 * @param index
+	 *            the element index
+	 * @return the index of the group containing the given element index or -1 if out of bounds
+	 */
+	public int groupIndexOf(int index) {
+		return groupIndexOf(ends, index);
+	}
+
+	/**
+	 * @param group
+	 *            the group index
+	 * @return the element index of the first element of the given group
+	 */
+	public int groupOffset(int group) {
+		return group == 0 ? 0 : ends[group - 1];
+	}
+
+	/**
+	 * binary search for the first group, whose end is larger than the given index, i.e. empty groups are skipped
+	 *
+	 * @param ends
+	 *            the prefix sums of the group sizes
+	 * @param index
+	 * @return the group index or -1 if out of bounds
+	 */
+	public static int groupIndexOf(int[] ends, int index) {
+		if (index < 0 || ends.length == 0 || index >= ends[ends.length - 1])
+			return -1;
+		int low = 0;
+		int high = ends.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ends[mid] <= index)
+				low = mid + 1;
+			else
+				high = mid;
 		}
-		throw new IndexOutOfBoundsException();
+		return low;
 	}
 
 	@Override
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * stable merge sort of indices by a primitive comparison of the elements they refer to, thus without boxing. Large
+ * inputs are sorted in parallel using the shared {@link Parallel#pool()}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public abstract class IndexSorter {
+	/**
+	 * below this size insertion sort is used
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 24;
+
+	/**
+	 * @return the comparison of the elements with the given indices
+	 */
+	protected abstract int compare(int a, int b);
+
+	/**
+	 * @see #sort(int, int)
+	 */
+	public final int[] sort(int n) {
+		return sort(n, Parallel.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * computes the stable sort order of the indices 0..n
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param threshold
+	 *            number of elements from which on the sort is done in parallel
+	 * @return the permutation of indices
+	 */
+	public final int[] sort(int n, int threshold) {
+		final int[] a = new int[n];
+		for (int i = 0; i < n; ++i)
+			a[i] = i;
+		if (n <= 1)
+			return a;
+		final int[] tmp = new int[n];
+		if (n >= threshold && Parallel.pool().getParallelism() > 1)
+			Parallel.pool().invoke(new SortTask(a, tmp, 0, n, Math.max(threshold, INSERTION_SORT_THRESHOLD)));
+		else
+			mergeSort(a, tmp, 0, n);
+		return a;
+	}
+
+	private void mergeSort(int[] a, int[] tmp, int from, int to) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(a, from, to);
+			return;
+		}
+		final int mid = (from + to) >>> 1;
+		mergeSort(a, tmp, from, mid);
+		mergeSort(a, tmp, mid, to);
+		merge(a, tmp, from, mid, to);
+	}
+
+	private void insertionSort(int[] a, int from, int to) {
+		for (int i = from + 1; i < to; ++i) {
+			final int v = a[i];
+			int j = i - 1;
+			while (j >= from && compare(a[j], v) > 0) {
+				a[j + 1] = a[j];
+				j--;
+			}
+			a[j + 1] = v;
+		}
+	}
+
+	private void merge(int[] a, int[] tmp, int from, int mid, int to) {
+		if (compare(a[mid - 1], a[mid]) <= 0) // already in order
+			return;
+		// just the left half is copied, the right one is consumed in place
+		System.arraycopy(a, from, tmp, from, mid - from);
+		int i = from, j = mid, k = from;
+		while (i < mid && j < to)
+			a[k++] = compare(a[j], tmp[i]) < 0 ? a[j++] : tmp[i++];
+		while (i < mid)
+			a[k++] = tmp[i++];
+	}
+
+	private final class SortTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] a;
+		private final int[] tmp;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		SortTask(int[] a, int[] tmp, int from, int to, int threshold) {
+			this.a = a;
+			this.tmp = tmp;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				mergeSort(a, tmp, from, to);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new SortTask(a, tmp, from, mid, threshold), new SortTask(a, tmp, mid, to, threshold));
+			merge(a, tmp, from, mid, to);
+		}
+	}
+}
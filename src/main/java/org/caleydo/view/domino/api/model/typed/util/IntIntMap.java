@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.Arrays;
+
+/**
+ * a primitive int to int open addressing hash map with linear probing, such that sparse and high keys are cheap, too
+ *
+ * not thread safe
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class IntIntMap {
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+
+	public IntIntMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the expected number of entries
+	 */
+	public IntIntMap(int expectedSize) {
+		final int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) << 1;
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		this.used = new boolean[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(int key) {
+		return slot(key) >= 0;
+	}
+
+	/**
+	 * @return the value of the given key or the given default if there is none
+	 */
+	public int get(int key, int missing) {
+		final int p = slot(key);
+		return p < 0 ? missing : values[p];
+	}
+
+	/**
+	 * sets the value of the given key
+	 */
+	public void put(int key, int value) {
+		if ((size + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+		final int mask = keys.length - 1;
+		int p = hash(key) & mask;
+		while (used[p] && keys[p] != key)
+			p = (p + 1) & mask;
+		if (!used[p]) {
+			used[p] = true;
+			keys[p] = key;
+			size++;
+		}
+		values[p] = value;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	private int slot(int key) {
+		final int mask = keys.length - 1;
+		for (int p = hash(key) & mask; used[p]; p = (p + 1) & mask) {
+			if (keys[p] == key)
+				return p;
+		}
+		return -1;
+	}
+
+	private void rehash(int capacity) {
+		final int[] oldKeys = keys;
+		final int[] oldValues = values;
+		final boolean[] oldUsed = used;
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; ++i)
+			if (oldUsed[i])
+				put(oldKeys[i], oldValues[i]);
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		return "IntIntMap [size=" + size + "]";
+	}
+}
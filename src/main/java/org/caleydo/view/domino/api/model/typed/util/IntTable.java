@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.Ints;
+
+/**
+ * an immutable table of int rows stored column wise, i.e. one int[] per column
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class IntTable implements Iterable<int[]> {
+	private final int[][] columns;
+	private final int size;
+	/**
+	 * lazy open addressing hash index of the rows, storing row index + 1, 0 = free
+	 */
+	private volatile int[] index;
+
+	/**
+	 * @param columns
+	 *            the columns, which must not be modified afterwards
+	 * @param size
+	 *            the number of used rows of the columns
+	 */
+	public IntTable(int[][] columns, int size) {
+		this(columns, size, null);
+	}
+
+	private IntTable(int[][] columns, int size, int[] index) {
+		this.columns = columns;
+		this.size = size;
+		this.index = index;
+	}
+
+	public static IntTable empty(int depth) {
+		return new IntTable(new int[depth][0], 0);
+	}
+
+	/**
+	 * @param depth
+	 * @param rows
+	 * @param distinct
+	 *            whether duplicate rows (by content) should be removed
+	 * @return
+	 */
+	public static IntTable of(int depth, Iterable<int[]> rows, boolean distinct) {
+		Builder b = new Builder(depth, 16, distinct);
+		for (int[] row : rows)
+			b.add(row);
+		return b.build();
+	}
+
+	public int depth() {
+		return columns.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int get(int row, int column) {
+		if (row >= size)
+			throw new IndexOutOfBoundsException();
+		return columns[column][row];
+	}
+
+	/**
+	 * @return a copy of the given row
+	 */
+	public int[] row(int row) {
+		if (row >= size)
+			throw new IndexOutOfBoundsException();
+		int[] r = new int[columns.length];
+		for (int j = 0; j < r.length; ++j)
+			r[j] = columns[j][row];
+		return r;
+	}
+
+	/**
+	 * @return a zero copy view of the given column
+	 */
+	public List<Integer> column(int column) {
+		return Ints.asList(columns[column]).subList(0, size);
+	}
+
+	/**
+	 * @return the raw column array, which might be longer than {@link #size()} and must not be modified
+	 */
+	public int[] columnArray(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * @return a new table with the given rows in the given order
+	 */
+	public IntTable select(int[] rows) {
+		int[][] r = new int[columns.length][rows.length];
+		for (int j = 0; j < columns.length; ++j) {
+			final int[] source = columns[j];
+			final int[] target = r[j];
+			for (int i = 0; i < rows.length; ++i)
+				target[i] = source[rows[i]];
+		}
+		return new IntTable(r, rows.length);
+	}
+
+	/**
+	 * @return a new table sharing the current columns with the additional columns appended, the row index isn't
+	 *         shared, as it hashes all columns of a row, and is built lazily again if needed
+	 */
+	public IntTable with(int[]... additional) {
+		int[][] r = Arrays.copyOf(columns, columns.length + additional.length);
+		for (int j = 0; j < additional.length; ++j) {
+			assert additional[j].length >= size;
+			r[columns.length + j] = additional[j];
+		}
+		return new IntTable(r, size);
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the row with the given content or -1
+	 */
+	public int indexOf(int[] row) {
+		if (row.length != columns.length)
+			return -1;
+		int[] index = this.index;
+		if (index == null)
+			this.index = index = createIndex();
+		final int mask = index.length - 1;
+		for (int p = hash(row) & mask; index[p] != 0; p = (p + 1) & mask) {
+			if (equalsRow(columns, index[p] - 1, row))
+				return index[p] - 1;
+		}
+		return -1;
+	}
+
+	private int[] createIndex() {
+		int[] index = new int[tableSize(size)];
+		final int mask = index.length - 1;
+		for (int i = 0; i < size; ++i) {
+			int p = hash(columns, i) & mask;
+			while (index[p] != 0)
+				p = (p + 1) & mask;
+			index[p] = i + 1;
+		}
+		return index;
+	}
+
+	private static int tableSize(int size) {
+		return Math.max(16, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+	}
+
+	static int hash(int[] row) {
+		int h = 1;
+		for (int v : row)
+			h = 31 * h + v;
+		return mix(h);
+	}
+
+	static int hash(int[][] columns, int row) {
+		int h = 1;
+		for (int[] c : columns)
+			h = 31 * h + c[row];
+		return mix(h);
+	}
+
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static boolean equalsRow(int[][] columns, int i, int[] row) {
+		for (int j = 0; j < row.length; ++j)
+			if (columns[j][i] != row[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * iterates over copies of the rows
+	 */
+	@Override
+	public Iterator<int[]> iterator() {
+		return new UnmodifiableIterator<int[]>() {
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public int[] next() {
+				if (i >= size)
+					throw new NoSuchElementException();
+				return row(i++);
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < size; ++i)
+			b.append(Arrays.toString(row(i))).append(',');
+		b.append(']');
+		return b.toString();
+	}
+
+	/**
+	 * builder for a {@link IntTable}, which optionally removes duplicate rows, not reusable after {@link #build()}
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public static final class Builder {
+		private final int[][] columns;
+		private final boolean distinct;
+		private int size = 0;
+		private int capacity;
+		private int[] slots;
+
+		public Builder(int depth, int expectedSize, boolean distinct) {
+			this.capacity = Math.max(4, expectedSize);
+			this.columns = new int[depth][capacity];
+			this.distinct = distinct;
+			this.slots = distinct ? new int[tableSize(capacity)] : null;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param row
+		 * @return whether the row was added, i.e. it wasn't already part
+		 */
+		public boolean add(int... row) {
+			assert row.length == columns.length;
+			int p = 0;
+			if (distinct) {
+				final int mask = slots.length - 1;
+				for (p = hash(row) & mask; slots[p] != 0; p = (p + 1) & mask) {
+					if (equalsRow(columns, slots[p] - 1, row))
+						return false;
+				}
+			}
+			if (size == capacity) {
+				capacity = capacity + (capacity >> 1) + 1;
+				for (int j = 0; j < columns.length; ++j)
+					columns[j] = Arrays.copyOf(columns[j], capacity);
+			}
+			for (int j = 0; j < row.length; ++j)
+				columns[j][size] = row[j];
+			size++;
+			if (distinct) {
+				slots[p] = size;
+				if (size * 2 > slots.length)
+					rehash();
+			}
+			return true;
+		}
+
+		private void rehash() {
+			slots = new int[slots.length * 2];
+			final int mask = slots.length - 1;
+			for (int i = 0; i < size; ++i) {
+				int p = hash(columns, i) & mask;
+				while (slots[p] != 0)
+					p = (p + 1) & mask;
+				slots[p] = i + 1;
+			}
+		}
+
+		public IntTable build() {
+			return new IntTable(columns, size, slots);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * shared fork join pool for data parallel computations
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class Parallel {
+	/**
+	 * below this number of elements a parallel computation isn't worth the overhead
+	 */
+	public static final int DEFAULT_THRESHOLD = 1 << 13;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private Parallel() {
+
+	}
+
+	/**
+	 * @return the shared pool
+	 */
+	public static ForkJoinPool pool() {
+		return POOL;
+	}
+
+	/**
+	 * @param size
+	 *            the number of elements to process
+	 * @return whether a parallel computation is useful
+	 */
+	public static boolean isWorthIt(long size) {
+		return size >= DEFAULT_THRESHOLD && POOL.getParallelism() > 1;
+	}
+}
@@ -0,0 +1,1056 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a compressed bitmap of int values in the style of roaring bitmaps.
+ *
+ * The value space is split into chunks of 2^16 values by the upper 16 bits (signed, such that negative values are
+ * handled natively and the iteration order is the natural int order). Each chunk is stored in the cheapest of three
+ * container types:
+ * <ul>
+ * <li>a sorted array of the lower 16 bits, for sparse chunks</li>
+ * <li>a plain 2^16 bit bitmap, for dense chunks</li>
+ * <li>a list of runs (start, length), for chunks of consecutive values, see {@link #runOptimize()}</li>
+ * </ul>
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class RoaringBitmap implements Iterable<Integer>, Cloneable {
+	/**
+	 * maximal number of entries of an array container, above a bitmap is cheaper
+	 */
+	static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	private int[] keys;
+	private Container[] containers;
+	private int size;
+
+	public RoaringBitmap() {
+		this(new int[4], new Container[4], 0);
+	}
+
+	private RoaringBitmap(int[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	public static RoaringBitmap of(int... values) {
+		RoaringBitmap r = new RoaringBitmap();
+		for (int v : values)
+			r.add(v);
+		return r;
+	}
+
+	private static int highbits(int x) {
+		return x >> 16;
+	}
+
+	private static int lowbits(int x) {
+		return x & 0xFFFF;
+	}
+
+	private int indexOf(int key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	public boolean contains(int x) {
+		int i = indexOf(highbits(x));
+		return i >= 0 && containers[i].contains(lowbits(x));
+	}
+
+	/**
+	 * @param x
+	 * @return whether the value was added
+	 */
+	public boolean add(int x) {
+		final int key = highbits(x);
+		int i = indexOf(key);
+		if (i >= 0) {
+			Container c = containers[i];
+			int before = c.cardinality();
+			containers[i] = c.add(lowbits(x));
+			return containers[i].cardinality() > before;
+		}
+		ArrayContainer c = new ArrayContainer();
+		c.add(lowbits(x));
+		insertAt(-i - 1, key, c);
+		return true;
+	}
+
+	/**
+	 * @param x
+	 * @return whether the value was removed
+	 */
+	public boolean remove(int x) {
+		int i = indexOf(highbits(x));
+		if (i < 0)
+			return false;
+		Container c = containers[i];
+		int before = c.cardinality();
+		c = c.remove(lowbits(x));
+		if (c.cardinality() == before)
+			return false;
+		if (c.cardinality() == 0)
+			removeAt(i);
+		else
+			containers[i] = c;
+		return true;
+	}
+
+	private void insertAt(int i, int key, Container c) {
+		if (size == keys.length) {
+			int l = Math.max(4, size * 2);
+			keys = Arrays.copyOf(keys, l);
+			containers = Arrays.copyOf(containers, l);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = c;
+		size++;
+	}
+
+	private void removeAt(int i) {
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	public void clear() {
+		Arrays.fill(containers, 0, size, null);
+		size = 0;
+	}
+
+	public boolean isEmpty() {
+		return size == 0; // empty containers are never stored
+	}
+
+	public int cardinality() {
+		int c = 0;
+		for (int i = 0; i < size; ++i)
+			c += containers[i].cardinality();
+		return c;
+	}
+
+	/**
+	 * converts all containers to run containers, if they are cheaper that way, useful for sets of consecutive ids
+	 *
+	 * @return this
+	 */
+	public RoaringBitmap runOptimize() {
+		for (int i = 0; i < size; ++i)
+			containers[i] = Containers.optimize(containers[i]);
+		return this;
+	}
+
+	/**
+	 * @return the estimated number of bytes used by the containers
+	 */
+	public long sizeInBytes() {
+		long r = 8 + size * 8L;
+		for (int i = 0; i < size; ++i)
+			r += containers[i].sizeInBytes();
+		return r;
+	}
+
+	public int[] toArray() {
+		int[] r = new int[cardinality()];
+		int j = 0;
+		for (int i = 0; i < size; ++i) {
+			final int high = keys[i] << 16;
+			final Container c = containers[i];
+			for (int v = c.nextValue(0); v >= 0; v = v == 0xFFFF ? -1 : c.nextValue(v + 1))
+				r[j++] = high | v;
+		}
+		return r;
+	}
+
+	@Override
+	public RoaringBitmap clone() {
+		Container[] c = new Container[Math.max(4, size)];
+		for (int i = 0; i < size; ++i)
+			c[i] = containers[i].copy();
+		return new RoaringBitmap(Arrays.copyOf(keys, c.length), c, size);
+	}
+
+	/**
+	 * in place intersection with the given bitmap
+	 *
+	 * @param o
+	 */
+	public void and(RoaringBitmap o) {
+		int i = 0, j = 0, n = 0;
+		while (i < size && j < o.size) {
+			int ki = keys[i], kj = o.keys[j];
+			if (ki < kj)
+				i++;
+			else if (ki > kj)
+				j++;
+			else {
+				Container c = Containers.iand(containers[i], o.containers[j]);
+				if (c.cardinality() > 0) {
+					keys[n] = ki;
+					containers[n++] = c;
+				}
+				i++;
+				j++;
+			}
+		}
+		Arrays.fill(containers, n, size, null);
+		size = n;
+	}
+
+	/**
+	 * in place union with the given bitmap
+	 *
+	 * @param o
+	 */
+	public void or(RoaringBitmap o) {
+		if (o.size == 0)
+			return;
+		int[] k = new int[size + o.size];
+		Container[] cs = new Container[k.length];
+		int i = 0, j = 0, n = 0;
+		while (i < size || j < o.size) {
+			if (j >= o.size || (i < size && keys[i] < o.keys[j])) {
+				k[n] = keys[i];
+				cs[n++] = containers[i++];
+			} else if (i >= size || keys[i] > o.keys[j]) {
+				k[n] = o.keys[j];
+				cs[n++] = o.containers[j++].copy();
+			} else {
+				k[n] = keys[i];
+				cs[n++] = Containers.ior(containers[i++], o.containers[j++]);
+			}
+		}
+		keys = k;
+		containers = cs;
+		size = n;
+	}
+
+	/**
+	 * in place difference with the given bitmap
+	 *
+	 * @param o
+	 */
+	public void andNot(RoaringBitmap o) {
+		int i = 0, j = 0, n = 0;
+		while (i < size) {
+			while (j < o.size && o.keys[j] < keys[i])
+				j++;
+			Container c = containers[i];
+			if (j < o.size && o.keys[j] == keys[i])
+				c = Containers.iandNot(c, o.containers[j]);
+			if (c.cardinality() > 0) {
+				keys[n] = keys[i];
+				containers[n++] = c;
+			}
+			i++;
+		}
+		Arrays.fill(containers, n, size, null);
+		size = n;
+	}
+
+	public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+		RoaringBitmap r = new RoaringBitmap(new int[Math.max(4, Math.min(a.size, b.size))],
+				new Container[Math.max(4, Math.min(a.size, b.size))], 0);
+		int i = 0, j = 0;
+		while (i < a.size && j < b.size) {
+			int ki = a.keys[i], kj = b.keys[j];
+			if (ki < kj)
+				i++;
+			else if (ki > kj)
+				j++;
+			else {
+				Container c = Containers.and(a.containers[i], b.containers[j]);
+				if (c.cardinality() > 0) {
+					r.keys[r.size] = ki;
+					r.containers[r.size++] = c;
+				}
+				i++;
+				j++;
+			}
+		}
+		return r;
+	}
+
+	public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+		RoaringBitmap r = a.clone();
+		r.or(b);
+		return r;
+	}
+
+	public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+		RoaringBitmap r = new RoaringBitmap(new int[Math.max(4, a.size)], new Container[Math.max(4, a.size)], 0);
+		int j = 0;
+		for (int i = 0; i < a.size; ++i) {
+			while (j < b.size && b.keys[j] < a.keys[i])
+				j++;
+			Container c;
+			if (j < b.size && b.keys[j] == a.keys[i])
+				c = Containers.andNot(a.containers[i], b.containers[j]);
+			else
+				c = a.containers[i].copy();
+			if (c.cardinality() > 0) {
+				r.keys[r.size] = a.keys[i];
+				r.containers[r.size++] = c;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * @return the number of values in both bitmaps, without materializing the intersection
+	 */
+	public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+		int i = 0, j = 0, r = 0;
+		while (i < a.size && j < b.size) {
+			int ki = a.keys[i], kj = b.keys[j];
+			if (ki < kj)
+				i++;
+			else if (ki > kj)
+				j++;
+			else
+				r += Containers.andCardinality(a.containers[i++], b.containers[j++]);
+		}
+		return r;
+	}
+
+	/**
+	 * @return the number of values in any of the bitmaps, without materializing the union
+	 */
+	public static int orCardinality(RoaringBitmap a, RoaringBitmap b) {
+		return a.cardinality() + b.cardinality() - andCardinality(a, b);
+	}
+
+	/**
+	 * @return the number of values in a but not in b, without materializing the difference
+	 */
+	public static int andNotCardinality(RoaringBitmap a, RoaringBitmap b) {
+		return a.cardinality() - andCardinality(a, b);
+	}
+
+	public static boolean intersects(RoaringBitmap a, RoaringBitmap b) {
+		int i = 0, j = 0;
+		while (i < a.size && j < b.size) {
+			int ki = a.keys[i], kj = b.keys[j];
+			if (ki < kj)
+				i++;
+			else if (ki > kj)
+				j++;
+			else if (Containers.andCardinality(a.containers[i++], b.containers[j++]) > 0)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public IntIterator iterator() {
+		return new IntIterator();
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (IntIterator it = iterator(); it.hasNext();)
+			h = 31 * h + it.nextInt();
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof RoaringBitmap))
+			return false;
+		RoaringBitmap other = (RoaringBitmap) obj;
+		if (size != other.size)
+			return false;
+		for (int i = 0; i < size; ++i) {
+			if (keys[i] != other.keys[i])
+				return false;
+			Container a = containers[i];
+			Container b = other.containers[i];
+			if (a.cardinality() != b.cardinality() || Containers.andCardinality(a, b) != a.cardinality())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * iterator over the values in ascending order, without boxing using {@link #nextInt()}
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public final class IntIterator implements Iterator<Integer> {
+		private int index = 0;
+		private int low = -1;
+		private int last;
+		private boolean canRemove = false;
+
+		IntIterator() {
+			advance(0, 0);
+		}
+
+		private void advance(int i, int from) {
+			while (i < size) {
+				int v = from > 0xFFFF ? -1 : containers[i].nextValue(from);
+				if (v >= 0) {
+					index = i;
+					low = v;
+					return;
+				}
+				i++;
+				from = 0;
+			}
+			index = size;
+			low = -1;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return low >= 0;
+		}
+
+		public int nextInt() {
+			if (low < 0)
+				throw new NoSuchElementException();
+			last = (keys[index] << 16) | low;
+			advance(index, low + 1);
+			canRemove = true;
+			return last;
+		}
+
+		@Override
+		public Integer next() {
+			return nextInt();
+		}
+
+		@Override
+		public void remove() {
+			if (!canRemove)
+				throw new IllegalStateException();
+			canRemove = false;
+			final boolean hasNext = hasNext();
+			final int next = hasNext ? (keys[index] << 16) | low : 0;
+			RoaringBitmap.this.remove(last);
+			if (hasNext) { // relocate as containers might have been changed or removed
+				int i = indexOf(highbits(next));
+				advance(i, lowbits(next));
+			}
+		}
+	}
+
+	/**
+	 * a container of 2^16 values
+	 */
+	static abstract class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(int x);
+
+		/**
+		 * @return the container to use afterwards, might be a new one
+		 */
+		abstract Container add(int x);
+
+		/**
+		 * @return the container to use afterwards, might be a new one
+		 */
+		abstract Container remove(int x);
+
+		/**
+		 * @return the next value >= from or -1 if there is none
+		 */
+		abstract int nextValue(int from);
+
+		abstract BitmapContainer toBitmap();
+
+		abstract long sizeInBytes();
+
+		/**
+		 * @return a deep copy of this container
+		 */
+		abstract Container copy();
+
+		int runCount() {
+			int r = 0;
+			int prev = -2;
+			for (int v = nextValue(0); v >= 0; v = v == 0xFFFF ? -1 : nextValue(v + 1)) {
+				if (v != prev + 1)
+					r++;
+				prev = v;
+			}
+			return r;
+		}
+
+		BitmapContainer asBitmap() {
+			return toBitmap();
+		}
+	}
+
+	static final class ArrayContainer extends Container {
+		char[] content;
+		int card;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] content, int card) {
+			this.content = content;
+			this.card = card;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(int x) {
+			return Arrays.binarySearch(content, 0, card, (char) x) >= 0;
+		}
+
+		@Override
+		Container add(int x) {
+			int i = Arrays.binarySearch(content, 0, card, (char) x);
+			if (i >= 0)
+				return this;
+			if (card >= MAX_ARRAY_SIZE) {
+				BitmapContainer b = toBitmap();
+				b.add(x);
+				return b;
+			}
+			i = -i - 1;
+			if (card == content.length)
+				content = Arrays.copyOf(content, Math.min(MAX_ARRAY_SIZE, Math.max(4, card * 2)));
+			System.arraycopy(content, i, content, i + 1, card - i);
+			content[i] = (char) x;
+			card++;
+			return this;
+		}
+
+		@Override
+		Container remove(int x) {
+			int i = Arrays.binarySearch(content, 0, card, (char) x);
+			if (i < 0)
+				return this;
+			System.arraycopy(content, i + 1, content, i, card - i - 1);
+			card--;
+			return this;
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = Arrays.binarySearch(content, 0, card, (char) from);
+			if (i < 0)
+				i = -i - 1;
+			return i < card ? content[i] : -1;
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i < card; ++i)
+				b.words[content[i] >>> 6] |= 1L << content[i];
+			b.card = card;
+			return b;
+		}
+
+		@Override
+		int runCount() {
+			int r = 0;
+			for (int i = 0; i < card; ++i)
+				if (i == 0 || content[i] != content[i - 1] + 1)
+					r++;
+			return r;
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16 + content.length * 2L;
+		}
+
+		@Override
+		ArrayContainer copy() {
+			return new ArrayContainer(Arrays.copyOf(content, Math.max(4, card)), card);
+		}
+
+		/**
+		 * @return a new container with all entries of this, which are (not) part of other
+		 */
+		ArrayContainer filter(Container other, boolean in) {
+			if (in && other instanceof ArrayContainer) { // merge
+				ArrayContainer o = (ArrayContainer) other;
+				char[] r = new char[Math.max(4, Math.min(card, o.card))];
+				int i = 0, j = 0, n = 0;
+				while (i < card && j < o.card) {
+					char a = content[i], b = o.content[j];
+					if (a < b)
+						i++;
+					else if (a > b)
+						j++;
+					else {
+						r[n++] = a;
+						i++;
+						j++;
+					}
+				}
+				return new ArrayContainer(r, n);
+			}
+			char[] r = new char[Math.max(4, card)];
+			int n = 0;
+			for (int i = 0; i < card; ++i)
+				if (other.contains(content[i]) == in)
+					r[n++] = content[i];
+			return new ArrayContainer(r, n);
+		}
+
+		void filterInPlace(Container other, boolean in) {
+			int n = 0;
+			for (int i = 0; i < card; ++i)
+				if (other.contains(content[i]) == in)
+					content[n++] = content[i];
+			card = n;
+		}
+
+		int countIn(Container other) {
+			int n = 0;
+			for (int i = 0; i < card; ++i)
+				if (other.contains(content[i]))
+					n++;
+			return n;
+		}
+	}
+
+	static final class BitmapContainer extends Container {
+		final long[] words;
+		int card;
+
+		BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		private BitmapContainer(long[] words, int card) {
+			this.words = words;
+			this.card = card;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(int x) {
+			return (words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		@Override
+		Container add(int x) {
+			long w = words[x >>> 6];
+			long n = w | (1L << x);
+			if (n != w) {
+				words[x >>> 6] = n;
+				card++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(int x) {
+			long w = words[x >>> 6];
+			long n = w & ~(1L << x);
+			if (n != w) {
+				words[x >>> 6] = n;
+				card--;
+				if (card <= MAX_ARRAY_SIZE)
+					return toArray();
+			}
+			return this;
+		}
+
+		@Override
+		int nextValue(int from) {
+			int w = from >>> 6;
+			long word = words[w] & (-1L << from);
+			while (word == 0) {
+				if (++w == BITMAP_WORDS)
+					return -1;
+				word = words[w];
+			}
+			return (w << 6) + Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			return copy();
+		}
+
+		@Override
+		BitmapContainer asBitmap() {
+			return this;
+		}
+
+		@Override
+		int runCount() {
+			int r = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i) {
+				long w = words[i];
+				// count the starts of runs: bits set whose predecessor is not set
+				long prevBits = (w << 1) | (i > 0 ? words[i - 1] >>> 63 : 0);
+				r += Long.bitCount(w & ~prevBits);
+			}
+			return r;
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16 + BITMAP_WORDS * 8L;
+		}
+
+		@Override
+		BitmapContainer copy() {
+			return new BitmapContainer(words.clone(), card);
+		}
+
+		ArrayContainer toArray() {
+			char[] r = new char[Math.max(4, card)];
+			int n = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i) {
+				long w = words[i];
+				while (w != 0) {
+					r[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+					w &= w - 1;
+				}
+			}
+			return new ArrayContainer(r, n);
+		}
+
+		/**
+		 * @return the cheaper representation of this container
+		 */
+		Container normalize() {
+			return card <= MAX_ARRAY_SIZE ? toArray() : this;
+		}
+
+		private void recount() {
+			int c = 0;
+			for (long w : words)
+				c += Long.bitCount(w);
+			card = c;
+		}
+
+		void andInPlace(BitmapContainer o) {
+			for (int i = 0; i < BITMAP_WORDS; ++i)
+				words[i] &= o.words[i];
+			recount();
+		}
+
+		void orInPlace(Container o) {
+			if (o instanceof ArrayContainer) {
+				ArrayContainer a = (ArrayContainer) o;
+				for (int i = 0; i < a.card; ++i)
+					add(a.content[i]);
+				return;
+			}
+			long[] ow = o.asBitmap().words;
+			for (int i = 0; i < BITMAP_WORDS; ++i)
+				words[i] |= ow[i];
+			recount();
+		}
+
+		void andNotInPlace(Container o) {
+			if (o instanceof ArrayContainer) {
+				ArrayContainer a = (ArrayContainer) o;
+				for (int i = 0; i < a.card; ++i) {
+					char x = a.content[i];
+					long w = words[x >>> 6];
+					long n = w & ~(1L << x);
+					if (n != w) {
+						words[x >>> 6] = n;
+						card--;
+					}
+				}
+				return;
+			}
+			long[] ow = o.asBitmap().words;
+			for (int i = 0; i < BITMAP_WORDS; ++i)
+				words[i] &= ~ow[i];
+			recount();
+		}
+
+		int andCardinality(BitmapContainer o) {
+			int c = 0;
+			for (int i = 0; i < BITMAP_WORDS; ++i)
+				c += Long.bitCount(words[i] & o.words[i]);
+			return c;
+		}
+
+		void setRange(int start, int endInclusive) {
+			int first = start >>> 6;
+			int last = endInclusive >>> 6;
+			long startMask = -1L << start;
+			long endMask = -1L >>> (63 - (endInclusive & 63));
+			if (first == last) {
+				words[first] |= startMask & endMask;
+				return;
+			}
+			words[first] |= startMask;
+			for (int i = first + 1; i < last; ++i)
+				words[i] = -1L;
+			words[last] |= endMask;
+		}
+	}
+
+	/**
+	 * run length encoded container, stored as pairs of (start, length - 1)
+	 */
+	static final class RunContainer extends Container {
+		private final char[] runs;
+		private final int nruns;
+		private final int card;
+
+		RunContainer(char[] runs, int nruns) {
+			this.runs = runs;
+			this.nruns = nruns;
+			int c = 0;
+			for (int i = 0; i < nruns; ++i)
+				c += runs[2 * i + 1] + 1;
+			this.card = c;
+		}
+
+		static RunContainer of(Container c, int nruns) {
+			char[] runs = new char[nruns * 2];
+			int n = -1;
+			int prev = -2;
+			for (int v = c.nextValue(0); v >= 0; v = v == 0xFFFF ? -1 : c.nextValue(v + 1)) {
+				if (v == prev + 1)
+					runs[2 * n + 1]++;
+				else {
+					n++;
+					runs[2 * n] = (char) v;
+					runs[2 * n + 1] = 0;
+				}
+				prev = v;
+			}
+			return new RunContainer(runs, nruns);
+		}
+
+		private int start(int i) {
+			return runs[2 * i];
+		}
+
+		private int end(int i) {
+			return runs[2 * i] + runs[2 * i + 1];
+		}
+
+		/**
+		 * @return index of the last run starting before or at x or -1
+		 */
+		private int findRun(int x) {
+			int lo = 0, hi = nruns - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (start(mid) <= x)
+					lo = mid + 1;
+				else
+					hi = mid - 1;
+			}
+			return hi;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(int x) {
+			int i = findRun(x);
+			return i >= 0 && x <= end(i);
+		}
+
+		/**
+		 * run containers are meant for frozen sets, a modification converts them back to a mutable container
+		 */
+		private Container toMutable() {
+			return card <= MAX_ARRAY_SIZE ? toBitmap().toArray() : toBitmap();
+		}
+
+		@Override
+		Container add(int x) {
+			if (contains(x))
+				return this;
+			return toMutable().add(x);
+		}
+
+		@Override
+		Container remove(int x) {
+			if (!contains(x))
+				return this;
+			return toMutable().remove(x);
+		}
+
+		@Override
+		int nextValue(int from) {
+			int i = findRun(from);
+			if (i >= 0 && from <= end(i))
+				return from;
+			return i + 1 < nruns ? start(i + 1) : -1;
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i < nruns; ++i)
+				b.setRange(start(i), end(i));
+			b.card = card;
+			return b;
+		}
+
+		@Override
+		int runCount() {
+			return nruns;
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16 + runs.length * 2L;
+		}
+
+		@Override
+		RunContainer copy() {
+			return this; // immutable
+		}
+	}
+
+	/**
+	 * operations between containers of arbitrary types
+	 */
+	static final class Containers {
+		private Containers() {
+
+		}
+
+		static Container optimize(Container c) {
+			int runs = c.runCount();
+			long runBytes = 4L * runs + 2;
+			long current = c.cardinality() <= MAX_ARRAY_SIZE ? 2L * c.cardinality() : 8L * BITMAP_WORDS;
+			if (c instanceof RunContainer)
+				return runBytes <= current ? c : ((RunContainer) c).toMutable();
+			if (runBytes < current)
+				return RunContainer.of(c, runs);
+			return c;
+		}
+
+		static Container and(Container a, Container b) {
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter(b, true);
+			if (b instanceof ArrayContainer)
+				return ((ArrayContainer) b).filter(a, true);
+			BitmapContainer r = a.toBitmap();
+			r.andInPlace(b.asBitmap());
+			return r.normalize();
+		}
+
+		static Container or(Container a, Container b) {
+			if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+				ArrayContainer x = (ArrayContainer) a;
+				ArrayContainer y = (ArrayContainer) b;
+				if (x.card + y.card <= MAX_ARRAY_SIZE) {
+					char[] r = new char[Math.max(4, x.card + y.card)];
+					int i = 0, j = 0, n = 0;
+					while (i < x.card || j < y.card) {
+						if (j >= y.card || (i < x.card && x.content[i] < y.content[j]))
+							r[n++] = x.content[i++];
+						else if (i >= x.card || x.content[i] > y.content[j])
+							r[n++] = y.content[j++];
+						else {
+							r[n++] = x.content[i++];
+							j++;
+						}
+					}
+					return new ArrayContainer(r, n);
+				}
+			}
+			if (a instanceof ArrayContainer) { // clone the bigger one
+				Container t = a;
+				a = b;
+				b = t;
+			}
+			BitmapContainer r = a.toBitmap();
+			r.orInPlace(b);
+			return r.normalize();
+		}
+
+		static Container andNot(Container a, Container b) {
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).filter(b, false);
+			BitmapContainer r = a.toBitmap();
+			r.andNotInPlace(b);
+			return r.normalize();
+		}
+
+		static int andCardinality(Container a, Container b) {
+			if (a instanceof ArrayContainer)
+				return ((ArrayContainer) a).countIn(b);
+			if (b instanceof ArrayContainer)
+				return ((ArrayContainer) b).countIn(a);
+			return a.asBitmap().andCardinality(b.asBitmap());
+		}
+
+		static Container iand(Container a, Container b) {
+			if (a instanceof ArrayContainer) {
+				((ArrayContainer) a).filterInPlace(b, true);
+				return a;
+			}
+			if (a instanceof BitmapContainer && !(b instanceof ArrayContainer)) {
+				BitmapContainer r = (BitmapContainer) a;
+				r.andInPlace(b.asBitmap());
+				return r.normalize();
+			}
+			return and(a, b);
+		}
+
+		static Container ior(Container a, Container b) {
+			if (a instanceof BitmapContainer) {
+				((BitmapContainer) a).orInPlace(b);
+				return a;
+			}
+			return or(a, b);
+		}
+
+		static Container iandNot(Container a, Container b) {
+			if (a instanceof ArrayContainer) {
+				((ArrayContainer) a).filterInPlace(b, false);
+				return a;
+			}
+			if (a instanceof BitmapContainer) {
+				BitmapContainer r = (BitmapContainer) a;
+				r.andNotInPlace(b);
+				return r.normalize();
+			}
+			return andNot(a, b);
+		}
+	}
+}
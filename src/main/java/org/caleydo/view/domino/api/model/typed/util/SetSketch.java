@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.Arrays;
+
+/**
+ * an immutable approximate summary of a set of integers for estimating cardinalities and similarities without the
+ * set itself.
+ *
+ * It combines a HyperLogLog sketch for the cardinality of unions and a bottom-k MinHash sketch for the Jaccard
+ * similarity. If a set has at most {@link #K} elements the MinHash sketch contains all of them and the estimates
+ * are exact.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class SetSketch {
+	/**
+	 * number of HyperLogLog register bits, i.e. 2^P registers with a standard error of about 1.04/sqrt(2^P) = 2.3%
+	 */
+	private static final int P = 11;
+	private static final int M = 1 << P;
+	/**
+	 * size of the bottom-k MinHash sketch
+	 */
+	public static final int K = 256;
+
+	private final byte[] registers;
+	/**
+	 * the sorted, at most {@link #K} smallest hashes
+	 */
+	private final long[] mins;
+	/**
+	 * whether {@link #mins} contains all hashes of the set
+	 */
+	private final boolean complete;
+
+	private SetSketch(byte[] registers, long[] mins, boolean complete) {
+		this.registers = registers;
+		this.mins = mins;
+		this.complete = complete;
+	}
+
+	public static SetSketch of(Iterable<Integer> ids) {
+		Builder b = new Builder();
+		for (Integer id : ids)
+			b.add(id.intValue());
+		return b.build();
+	}
+
+	/**
+	 * @param ids
+	 *            distinct ids, duplicates are not detected and would end up multiple times in the bottom-k sketch,
+	 *            thus corrupting the exact estimates of small sets
+	 * @param from
+	 *            inclusive start index
+	 * @param to
+	 *            exclusive end index
+	 * @return the sketch of the given range of ids
+	 */
+	public static SetSketch of(int[] ids, int from, int to) {
+		Builder b = new Builder();
+		for (int i = from; i < to; ++i)
+			b.add(ids[i]);
+		return b.build();
+	}
+
+	/**
+	 * @return the estimated number of distinct elements
+	 */
+	public long cardinality() {
+		if (complete)
+			return mins.length;
+		return estimate(registers);
+	}
+
+	/**
+	 * @return the estimated number of distinct elements of the union of both sets
+	 */
+	public long unionCardinality(SetSketch that) {
+		if (this.complete && that.complete)
+			return mergedCount(this.mins, that.mins);
+		byte[] r = new byte[M];
+		for (int i = 0; i < M; ++i)
+			r[i] = (byte) Math.max(this.registers[i], that.registers[i]);
+		return estimate(r);
+	}
+
+	/**
+	 * @return the estimated Jaccard similarity |A &cap; B| / |A &cup; B|
+	 */
+	public double jaccard(SetSketch that) {
+		if (this.mins.length == 0 || that.mins.length == 0)
+			return 0;
+		// walk the k smallest hashes of the union and count the ones in both
+		int i = 0, j = 0, n = 0, both = 0;
+		final int k = this.complete && that.complete ? Integer.MAX_VALUE : K;
+		while (n < k && (i < this.mins.length || j < that.mins.length)) {
+			long a = i < this.mins.length ? this.mins[i] : Long.MAX_VALUE;
+			long b = j < that.mins.length ? that.mins[j] : Long.MAX_VALUE;
+			if (a == b && i < this.mins.length && j < that.mins.length) {
+				both++;
+				i++;
+				j++;
+			} else if (j >= that.mins.length || (i < this.mins.length && a < b))
+				i++;
+			else
+				j++;
+			n++;
+		}
+		return both / (double) n;
+	}
+
+	/**
+	 * @return the estimated number of shared elements
+	 */
+	public long intersection(SetSketch that) {
+		if (this.mins.length == 0 || that.mins.length == 0)
+			return 0;
+		long union = unionCardinality(that);
+		long r = Math.round(jaccard(that) * union);
+		return Math.min(r, Math.min(this.cardinality(), that.cardinality()));
+	}
+
+	private static long mergedCount(long[] a, long[] b) {
+		int i = 0, j = 0;
+		long n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] == b[j]) {
+				i++;
+				j++;
+			} else if (a[i] < b[j])
+				i++;
+			else
+				j++;
+			n++;
+		}
+		return n + (a.length - i) + (b.length - j);
+	}
+
+	private static long estimate(byte[] registers) {
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0)
+				zeros++;
+		}
+		final double alpha = 0.7213 / (1 + 1.079 / M);
+		double e = alpha * M * M / sum;
+		if (e <= 2.5 * M && zeros > 0) // small range correction: linear counting
+			e = M * Math.log(M / (double) zeros);
+		return Math.round(e);
+	}
+
+	/**
+	 * 64 bit finalizer of SplitMix64, a bijection, thus distinct ids have distinct hashes
+	 */
+	static long hash(int id) {
+		long z = id + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public String toString() {
+		return "SetSketch [cardinality=" + cardinality() + ", complete=" + complete + "]";
+	}
+
+	/**
+	 * builder for a {@link SetSketch} of distinct ids
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public static final class Builder {
+		private final byte[] registers = new byte[M];
+		/**
+		 * max heap of the k smallest hashes
+		 */
+		private final long[] heap = new long[K];
+		private int size = 0;
+		private long count = 0;
+
+		/**
+		 * @param id
+		 *            a new distinct id
+		 */
+		public void add(int id) {
+			final long h = hash(id);
+			count++;
+			// hyper log log
+			final int index = (int) (h >>> (64 - P));
+			final byte rho = (byte) (Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1);
+			if (registers[index] < rho)
+				registers[index] = rho;
+			// bottom-k, rotated such that the smallest values don't share their register index
+			final long v = Long.rotateLeft(h, 32);
+			if (size < K) {
+				heap[size] = v;
+				siftUp(size++);
+			} else if (v < heap[0]) {
+				heap[0] = v;
+				siftDown(0);
+			}
+		}
+
+		private void siftUp(int i) {
+			final long v = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (heap[parent] >= v)
+					break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = v;
+		}
+
+		private void siftDown(int i) {
+			final long v = heap[i];
+			final int half = size >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && heap[child + 1] > heap[child])
+					child++;
+				if (v >= heap[child])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = v;
+		}
+
+		public SetSketch build() {
+			long[] mins = Arrays.copyOf(heap, size);
+			Arrays.sort(mins);
+			return new SetSketch(registers.clone(), mins, count <= K);
+		}
+	}
+}
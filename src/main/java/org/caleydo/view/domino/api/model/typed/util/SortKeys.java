@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.api.model.typed.util;
+
+import java.util.Arrays;
+
+/**
+ * materialized primitive sort keys of a sort criterion, i.e. one or more levels of double keys, one key per row,
+ * compared using {@link Double#compare(double, double)}, thus NaN is last in ascending order.
+ *
+ * Sorting by keys needs a single O(n) pass per criterion to compute them in contrast to O(n log n) comparator
+ * invocations
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class SortKeys {
+	private double[][] levels = new double[2][];
+	private boolean[] reversed = new boolean[2];
+	private int size = 0;
+
+	/**
+	 * adds another level of keys, used if the previous levels are equal
+	 *
+	 * @param keys
+	 *            one key per row
+	 * @param reverse
+	 *            whether the order of this level should be reversed
+	 * @return this
+	 */
+	public SortKeys add(double[] keys, boolean reverse) {
+		if (size == levels.length) {
+			levels = Arrays.copyOf(levels, size * 2);
+			reversed = Arrays.copyOf(reversed, size * 2);
+		}
+		levels[size] = keys;
+		reversed[size] = reverse;
+		size++;
+		return this;
+	}
+
+	public SortKeys add(double[] keys) {
+		return add(keys, false);
+	}
+
+	public SortKeys add(int[] keys, int length, boolean reverse) {
+		double[] r = new double[length];
+		for (int i = 0; i < length; ++i)
+			r[i] = keys[i];
+		return add(r, reverse);
+	}
+
+	/**
+	 * @return the number of levels
+	 */
+	public int levels() {
+		return size;
+	}
+
+	/**
+	 * computes the stable sort order of the first n rows using the given criteria in the given order
+	 *
+	 * @param n
+	 *            the number of rows
+	 * @param criteria
+	 * @return the permutation of row indices
+	 */
+	public static int[] sort(int n, SortKeys... criteria) {
+		int total = 0;
+		for (SortKeys c : criteria)
+			total += c.size;
+		final double[][] levels = new double[total][];
+		final boolean[] reversed = new boolean[total];
+		int k = 0;
+		for (SortKeys c : criteria) {
+			for (int i = 0; i < c.size; ++i, ++k) {
+				assert c.levels[i].length >= n;
+				levels[k] = c.levels[i];
+				reversed[k] = c.reversed[i];
+			}
+		}
+
+		if (total == 0) {
+			final int[] order = new int[n];
+			for (int i = 0; i < n; ++i)
+				order[i] = i;
+			return order;
+		}
+		return new IndexSorter() {
+			@Override
+			protected int compare(int x, int y) {
+				for (int l = 0; l < levels.length; ++l) {
+					final double[] keys = levels[l];
+					int r = Double.compare(keys[x], keys[y]);
+					if (r != 0)
+						return reversed[l] ? -r : r;
+				}
+				return 0;
+			}
+		}.sort(n);
+	}
+}
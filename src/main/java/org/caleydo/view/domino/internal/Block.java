@@ -61,7 +61,6 @@ import org.caleydo.view.domino.internal.dnd.ADragInfo;
 import org.caleydo.view.domino.internal.dnd.BlockDragInfo;
 import org.caleydo.view.domino.internal.event.HideNodeEvent;
 
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
 import com.google.common.collect.Iterables;
@@ -1146,15 +1145,16 @@ public class Block extends GLElementContainer implements IGLLayout2, IPickingLis
 	}
 
 	public void addVisibleItems(IDCategory category, Set<Integer> ids, IDType target) {
-		LoadingCache<IDType, IIDTypeMapper<Integer, Integer>> cache = MappingCaches.create(null, target);
 		for (LinearBlock b : linearBlocks) {
 			if (category.isOfCategory(b.getIdType())) {
 				TypedGroupList bids = b.getData();
 				if (target.equals(bids.getIdType()))
 					ids.addAll(bids);
 				else {
-					Set<Integer> converted = cache.getUnchecked(bids.getIdType()).apply(bids);
-					ids.addAll(converted);
+					IIDTypeMapper<Integer, Integer> mapper = MappingCaches.findMapper(bids.getIdType(), target);
+					Set<Integer> converted = mapper == null ? null : mapper.apply(bids);
+					if (converted != null)
+						ids.addAll(converted);
 				}
 			}
 		}
@@ -6,7 +6,7 @@
 package org.caleydo.view.domino.internal;
 
 import org.caleydo.core.util.color.Color;
-import org.caleydo.view.domino.internal.prefs.MyPreferences;
+import org.caleydo.view.domino.internal.util.ColorLookupTable;
 
 /**
  * @author Samuel Gratzl
@@ -22,16 +22,20 @@ public class Constants {
 	public static final float TARGET_MIN_VIEW_SIZE = 0.25f;
 
 	/**
-	 * @param vs
-	 * @return
+	 * @param a
+	 *            normalized value
+	 * @return the shared quantized color, which must not be modified, see {@link ColorLookupTable}
 	 */
 	public static Color colorMapping(float a) {
-		if (Float.isNaN(a))
-			return Color.NOT_A_NUMBER_COLOR;
-		Color max = MyPreferences.getNumericalMappingMaxColor();
-		Color min = MyPreferences.getNumericalMappingMinColor();
-		// v0*(1-t)+v1*t
-		float ma = 1 - a;
-		return new Color(min.r * ma + max.r * a, min.g * ma + max.g * a, min.b * ma + max.b * a, min.a * ma + max.a * a);
+		return ColorLookupTable.get().apply(a);
+	}
+
+	/**
+	 * @param a
+	 *            normalized value
+	 * @return the quantized color packed as 0xRRGGBBAA, see {@link ColorLookupTable}
+	 */
+	public static int colorMappingRGBA(float a) {
+		return ColorLookupTable.get().applyRGBA(a);
 	}
 }
@@ -21,6 +21,7 @@ import java.util.TreeSet;
 
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.event.EventListenerManager.ListenTo;
+import org.caleydo.core.event.EventPublisher;
 import org.caleydo.core.id.IDCreator;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.util.base.ILabeled;
@@ -51,18 +52,23 @@ import org.caleydo.core.view.opengl.layout2.manage.IGLElementMetaData;
 import org.caleydo.core.view.opengl.picking.IPickingListener;
 import org.caleydo.core.view.opengl.picking.Pick;
 import org.caleydo.view.domino.api.model.EDirection;
+import org.caleydo.view.domino.api.model.typed.ISortKeyComparator;
 import org.caleydo.view.domino.api.model.typed.ITypedComparator;
 import org.caleydo.view.domino.api.model.typed.TypedCollections;
 import org.caleydo.view.domino.api.model.typed.TypedGroupList;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.api.model.typed.TypedListGroup;
-import org.caleydo.view.domino.api.model.typed.TypedSetGroup;
+import org.caleydo.view.domino.api.model.typed.util.SortKeys;
+import org.caleydo.view.domino.internal.data.AsyncDataValues;
+import org.caleydo.view.domino.internal.data.EProjection;
 import org.caleydo.view.domino.internal.data.IDataValues;
+import org.caleydo.view.domino.internal.data.IHasAggregation;
 import org.caleydo.view.domino.internal.data.TransposedDataValues;
 import org.caleydo.view.domino.internal.dnd.DragElement;
 import org.caleydo.view.domino.internal.dnd.NodeDragInfo;
 import org.caleydo.view.domino.internal.dnd.NodeGroupDragInfo;
+import org.caleydo.view.domino.internal.event.DataValuesLoadedEvent;
 import org.caleydo.view.domino.internal.event.HideNodeEvent;
 import org.caleydo.view.domino.internal.undo.CmdComposite;
 import org.caleydo.view.domino.internal.undo.MergeNodesCmd;
@@ -94,6 +100,20 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 	private String label;
 
 	private IDataValues data;
+	/**
+	 * notified if {@link AsyncDataValues} are loaded, switching to the node's thread
+	 */
+	private final AsyncDataValues.ICallback onLoaded = new AsyncDataValues.ICallback() {
+		@Override
+		public void onLoaded(AsyncDataValues values, IDataValues loaded) {
+			EventPublisher.trigger(new DataValuesLoadedEvent(values, loaded).to(Node.this));
+		}
+
+		@Override
+		public void onFailed(AsyncDataValues values, RuntimeException error) {
+			// keep the placeholder, which shows the error
+		}
+	};
 
 	private TypedGroupList dimData;
 	private TypedGroupSet dimUnderlying;
@@ -505,11 +525,84 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 		this.data = data;
 	}
 
+	/**
+	 * @return the data values if they aggregate multiple columns when sorted by this node, otherwise null
+	 */
+	public IHasAggregation getAggregatingDataValues() {
+		IDataValues d = data instanceof TransposedDataValues ? TransposedDataValues.transpose(data) : data;
+		return d instanceof IHasAggregation ? (IHasAggregation) d : null;
+	}
+
+	/**
+	 * sets the aggregation of multiple columns used when sorting by this node and resorts
+	 */
+	public void setAggregation(EProjection aggregation) {
+		IHasAggregation d = getAggregatingDataValues();
+		if (d == null || d.getAggregation() == aggregation)
+			return;
+		d.setAggregation(aggregation);
+		if (findBlock() == null)
+			return;
+		for (EDimension dim : EDimension.values())
+			if (has(dim))
+				triggerResort(dim);
+	}
+
 	@Override
 	protected void takeDown() {
+		// removed or undone, no need to load anymore
+		AsyncDataValues async = getAsyncDataValues();
+		if (async != null)
+			async.cancel(onLoaded);
 		context.getMouseLayer().removeDropTarget(this);
 		super.takeDown();
 	}
+
+	/**
+	 * @return the data values if they are still loading
+	 */
+	private AsyncDataValues getAsyncDataValues() {
+		IDataValues d = data instanceof TransposedDataValues ? TransposedDataValues.transpose(data) : data;
+		if (d instanceof AsyncDataValues && !((AsyncDataValues) d).isLoaded())
+			return (AsyncDataValues) d;
+		return null;
+	}
+
+	private void startLoading() {
+		AsyncDataValues async = getAsyncDataValues();
+		if (async != null)
+			async.start(onLoaded);
+	}
+
+	@ListenTo(sendToMe = true)
+	private void onDataValuesLoadedEvent(DataValuesLoadedEvent event) {
+		final AsyncDataValues values = event.getValues();
+		final boolean transposed = data != values;
+		if (transposed && TransposedDataValues.transpose(data) != values) // replaced in the meantime
+			return;
+		this.data = transposed ? TransposedDataValues.transpose(event.getLoaded()) : event.getLoaded();
+
+		final Block block = findBlock();
+		for (EDimension dim : EDimension.values()) {
+			// update the untouched default groups, e.g. if the loaded values are grouped
+			TypedGroupSet initial = values.getInitialGroups(transposed ? dim.opposite() : dim);
+			TypedGroupSet loaded = data.getDefaultGroups(dim);
+			if (getUnderlyingData(dim) != initial || initial == loaded)
+				continue;
+			if (block != null)
+				setUnderlyingData(dim, loaded);
+			else {
+				setUnderlyingDataImpl(dim, loaded);
+				setData(dim, fixList(loaded));
+			}
+		}
+		// rebuild the visualizations
+		final float was = getDetachedOffset();
+		setData(dimData, recData);
+		if (block != null)
+			block.updatedNode(this, was, getDetachedOffset());
+	}
+
 	/**
 	 * @return the label, see {@link #label}
 	 */
@@ -632,6 +725,7 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 			scaleFactors.put(DATA_SCALE_FACTOR, v);
 		}
 		updateSize(false);
+		startLoading();
 	}
 
 
@@ -970,16 +1064,16 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 		// check existence
 		TypedGroupSet groups = getUnderlyingData(dim);
 		if (!groups.isEmpty()) {
-			boolean hasA = a >= 0 && groups.contains(a);
-			boolean hasB = b >= 0 && groups.contains(b);
+			int groupA = a >= 0 ? groups.groupIndexOf(a) : -1;
+			int groupB = b >= 0 ? groups.groupIndexOf(b) : -1;
+			boolean hasA = groupA >= 0;
+			boolean hasB = groupB >= 0;
 			int r;
 			if ((r = Boolean.compare(!hasA, !hasB)) != 0)
 				return reverse ? -r : r;
 			if (!hasA && !hasB)
 				return 0;
 			// check groups
-			int groupA = indexOf(groups, a);
-			int groupB = indexOf(groups, b);
 			if ((r = Integer.compare(groupA, groupB)) != 0)
 				return reverse ? -r : r;
 		}
@@ -988,8 +1082,50 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 		return reverse ? -r : r;
 	}
 
+	/**
+	 * materializes the order of {@link #compare(EDimension, int, int, boolean)} for the given ids: existence, group
+	 * index and the values itself
+	 *
+	 * @param dim
+	 * @param ids
+	 * @param size
+	 * @param reverse
+	 * @return
+	 */
+	public SortKeys toSortKeys(EDimension dim, int[] ids, int size, boolean reverse) {
+		SortKeys r = new SortKeys();
+		TypedGroupSet groups = getUnderlyingData(dim);
+		if (groups.isEmpty()) {
+			r.add(this.data.getSortKeys(dim, ids, size, getData(dim.opposite())), reverse);
+			return r;
+		}
+		// check existence and groups
+		double[] missing = new double[size];
+		double[] group = new double[size];
+		int[] existing = new int[size];
+		int[] positions = new int[size];
+		int n = 0;
+		for (int i = 0; i < size; ++i) {
+			int id = ids[i];
+			int g = id >= 0 ? groups.groupIndexOf(id) : -1;
+			if (g >= 0) {
+				group[i] = g;
+				existing[n] = id;
+				positions[n++] = i;
+			} else
+				missing[i] = 1;
+		}
+		// check values, just for the existing ones, missing ones are equal
+		double[] keys = this.data.getSortKeys(dim, existing, n, getData(dim.opposite()));
+		double[] values = new double[size];
+		for (int k = 0; k < n; ++k)
+			values[positions[k]] = keys[k];
+		r.add(missing, reverse).add(group, reverse).add(values, reverse);
+		return r;
+	}
+
 	public ITypedComparator getComparator(final EDimension dim, final boolean reverse) {
-		return new ITypedComparator() {
+		return new ISortKeyComparator() {
 			@Override
 			public IDType getIdType() {
 				return getUnderlyingData(dim).getIdType();
@@ -999,6 +1135,11 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 			public int compare(Integer o1, Integer o2) {
 				return Node.this.compare(dim, o1, o2, reverse);
 			}
+
+			@Override
+			public SortKeys toSortKeys(int[] ids, int size) {
+				return Node.this.toSortKeys(dim, ids, size, reverse);
+			}
 		};
 	}
 
@@ -1009,19 +1150,6 @@ public class Node extends GLElementContainer implements IGLLayout2, ILabeled, ID
 		findBlock().sortBy(this, dim);
 	}
 
-	/**
-	 * @param groups
-	 * @param a
-	 * @return
-	 */
-	private static int indexOf(TypedGroupSet groups, int a) {
-		List<TypedSetGroup> g = groups.getGroups();
-		for (int i = 0; i < g.size(); ++i)
-			if (g.get(i).contains(a))
-				return i;
-		return -1;
-	}
-
 	/**
 	 *
 	 */
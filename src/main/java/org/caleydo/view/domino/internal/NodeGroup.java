@@ -58,6 +58,9 @@ public class NodeGroup extends GLElementDecorator implements ILabeled, IDragGLSo
 	private TypedListGroup recData;
 
 	private final PickingBarrier barrier;
+	/**
+	 * packed colors of the cells of this group, see {@link IDataValues#fillRGBA}
+	 */
 	private boolean armed;
 
 	NodeGroup(Node parent) {
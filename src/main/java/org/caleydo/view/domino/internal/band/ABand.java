@@ -121,6 +121,16 @@ public abstract class ABand implements ILabeled, IHasMiniMap {
 
 	protected static String toIntersectionLabel(String a, int asize, String b, int bsize, TypedSet ashared,
 			TypedSet bshared) {
+		return toIntersectionLabel(a, asize, b, bsize, ashared, bshared, Double.NaN);
+	}
+
+	/**
+	 * @param jaccard
+	 *            the (estimated) Jaccard similarity of the two groups, see {@link TypedSet#estimateJaccard(TypedSet)},
+	 *            or NaN if unknown
+	 */
+	protected static String toIntersectionLabel(String a, int asize, String b, int bsize, TypedSet ashared,
+			TypedSet bshared, double jaccard) {
 		StringBuilder s = new StringBuilder(String.format("%s \u2229 %s\n", a, b));
 		s.append(String.format("|%d| \u2229 |%d| = ", asize, bsize));
 		if (ashared == bshared)
@@ -131,6 +141,8 @@ public abstract class ABand implements ILabeled, IHasMiniMap {
 			s.append(String.format("|%d| (%.2f%%) |%d| (%.2f%%)", ashared.size(), 100 * ashared.size() / (float) asize,
 					bshared.size(), 100 * bshared.size()
 					/ (float) bsize));
+		if (!Double.isNaN(jaccard))
+			s.append(String.format("\nJaccard \u2248 %.2f", jaccard));
 		return s.toString();
 	}
 
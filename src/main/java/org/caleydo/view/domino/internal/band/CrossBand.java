@@ -80,14 +80,14 @@ public class CrossBand extends ABand {
 
 			if (sr < 1) {
 				// add a non-mapped indicator
-				TypedSet sNotMapped = sData.asSet().difference(sShared);
+				TypedSet sNotMapped = sData.asSet().lazy().without(sShared).asSet();
 				Pair<Vec4f, Vec4f> r = notMappedConnectors(SOURCE, sr);
 				label = toNotMappedLabel(sLabel, sData.size(), tLabel, tData.size(), sNotMapped);
 				overviewRoutes.add(new NotMapped(label, sNotMapped, TypedCollections.empty(tData
 						.getIdType()), SOURCE, r.getFirst(), r.getSecond(), sDir, EBandMode.OVERVIEW));
 			}
 			if (tr < 1) {
-				TypedSet tNotMapped = tData.asSet().difference(tShared);
+				TypedSet tNotMapped = tData.asSet().lazy().without(tShared).asSet();
 				Pair<Vec4f, Vec4f> r = notMappedConnectors(TARGET, tr);
 				label = toNotMappedLabel(tLabel, tData.size(), sLabel, sData.size(), tNotMapped);
 				overviewRoutes.add(new NotMapped(label, TypedCollections.empty(sData.getIdType()),
@@ -375,7 +375,7 @@ public class CrossBand extends ABand {
 				TypedSet sShared = shared.slice(sData.getIdType());
 				TypedSet tShared = shared.slice(tData.getIdType());
 				String label = toIntersectionLabel(sgroup.getLabel(), sgroup.size(), tgroup.getLabel(), tgroup.size(),
-						sShared, tShared);
+						sShared, tShared, sset.estimateJaccard(tset));
 				final double tFactor = tgroupLocation.getSize() / tgroup.size();
 				double h = sShared.size() * sFactor;
 				double w = tShared.size() * tFactor;
@@ -392,7 +392,7 @@ public class CrossBand extends ABand {
 
 			final int notMapped = sgroup.size() - sinneracc;
 			if (notMapped > 0) {
-				TypedSet notMappedIds = sgroup.asSet().difference(overview.sShared);
+				TypedSet notMappedIds = sgroup.asSet().lazy().without(overview.sShared).asSet();
 				final float notMappedSize = (float) (notMapped * sFactor);
 				Pair<Vec4f, Vec4f> r = notMappedConnectors(SourceTarget.SOURCE, notMappedSize,
 						(float) sgroupLocation.getSize(), (float) sgroupLocation.getOffset(),
@@ -419,7 +419,7 @@ public class CrossBand extends ABand {
 				continue;
 			GLLocation tgroupLocation = locT(EBandMode.GROUPS, i);
 			final double tFactor = tgroupLocation.getSize() / tgroup.size();
-			TypedSet notMappedIds = tgroup.asSet().difference(overview.tShared);
+			TypedSet notMappedIds = tgroup.asSet().lazy().without(overview.tShared).asSet();
 			final float notMappedSize = (float) (notMapped * tFactor);
 			Pair<Vec4f, Vec4f> r = notMappedConnectors(SourceTarget.TARGET, notMappedSize,
 					(float) (tgroupLocation.getSize()), (float) (tgroupLocation.getOffset()), htotal);
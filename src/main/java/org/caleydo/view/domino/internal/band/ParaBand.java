@@ -81,14 +81,14 @@ public class ParaBand extends ABand {
 			overviewRoutes.add(this.overview);
 			if (sr < 1) {
 				// add a non-mapped indicator
-				TypedSet sNotMapped = sData.asSet().difference(sShared);
+				TypedSet sNotMapped = sData.asSet().lazy().without(sShared).asSet();
 				sv = toVec3(sLoc, SOURCE, (1 - sr), sr);
 				label = toNotMappedLabel(sLabel, sData.size(), tLabel, tData.size(), sNotMapped);
 				overviewRoutes.add(new NotMapped(label, sNotMapped, TypedCollections.empty(tData
 						.getIdType()), SOURCE, sv, toVec3(t, TARGET, 1, 0), which, EBandMode.OVERVIEW));
 			}
 			if (tr < 1) {
-				TypedSet tNotMapped = tData.asSet().difference(tShared);
+				TypedSet tNotMapped = tData.asSet().lazy().without(tShared).asSet();
 				tv = toVec3(tLoc, TARGET, (1 - tr), tr);
 				label = toNotMappedLabel(tLabel, tData.size(), sLabel, sData.size(), tNotMapped);
 				overviewRoutes.add(new NotMapped(label, TypedCollections.empty(sData.getIdType()),
@@ -219,7 +219,7 @@ public class ParaBand extends ABand {
 				double t1 = (tgroupLocation.getOffset() + tinneracc[j] * tFactor);
 				double t2 = t1 + tShared.size() * tFactor;
 				String label = toIntersectionLabel(sgroup.getLabel(), sgroup.size(), tgroup.getLabel(), tgroup.size(),
-						sShared, tShared);
+						sShared, tShared, sset.estimateJaccard(tset));
 				Vec4f sg, tg;
 				if (horizontal) {
 					sg = new Vec4f(this.s.x(), this.s.y() + (float) s1, (float) (s2 - s1), 0);
@@ -235,7 +235,7 @@ public class ParaBand extends ABand {
 
 			final int notMapped = sgroup.size() - sinneracc;
 			if (notMapped > 0) {
-				TypedSet notMappedIds = sgroup.asSet().difference(overview.sShared);
+				TypedSet notMappedIds = sgroup.asSet().lazy().without(overview.sShared).asSet();
 				double s1 = (sgroupLocation.getOffset() + sinneracc * sFactor);
 				Vec4f s;
 				if (horizontal)
@@ -257,7 +257,7 @@ public class ParaBand extends ABand {
 				continue;
 			GLLocation tgroupLocation = locT(EBandMode.GROUPS, i);
 			final double tFactor = tgroupLocation.getSize() / tgroup.size();
-			TypedSet notMappedIds = tgroup.asSet().difference(overview.tShared);
+			TypedSet notMappedIds = tgroup.asSet().lazy().without(overview.tShared).asSet();
 			double s1 = (tgroupLocation.getOffset() + tinneracc[i] * tFactor);
 			Vec4f s;
 			if (horizontal)
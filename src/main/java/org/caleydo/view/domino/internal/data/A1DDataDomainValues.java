@@ -80,6 +80,11 @@ public abstract class A1DDataDomainValues extends ADataDomainDataValues implemen
 		fill(b, data, dim, existNeigbhor);
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		return false;
+	}
+
 	/**
 	 * @param b
 	 * @param data
@@ -18,23 +18,41 @@ import org.caleydo.core.util.function.Function2;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext.Builder;
 import org.caleydo.view.domino.api.model.typed.ITypedCollection;
 import org.caleydo.view.domino.api.model.typed.TypedList;
+import org.caleydo.view.domino.internal.util.ColorLookupTable;
 
 import com.google.common.primitives.Floats;
-import com.jogamp.common.util.IntObjectHashMap;
 
 /**
  * @author Samuel Gratzl
  *
  */
-public abstract class ADataDomainDataValues implements IDataValues, Function2<Integer, Integer, Color> {
+public abstract class ADataDomainDataValues implements IDataValues, IHasAggregation,
+		Function2<Integer, Integer, Color> {
 	protected final ATableBasedDataDomain d;
 	private final String label;
 
 	private final int dims;
 	private final int records;
 
-	private final IntObjectHashMap dimFullCompareCache = new IntObjectHashMap();
-	private final IntObjectHashMap recFullCompareCache = new IntObjectHashMap();
+	/**
+	 * the sort keys of multi-column comparisons
+	 */
+	private final Aggregates dimAggregates = new Aggregates(new Aggregates.IValues() {
+		@Override
+		public float get(int id, int other) {
+			return getNormalized(id, other);
+		}
+	});
+	private final Aggregates recAggregates = new Aggregates(new Aggregates.IValues() {
+		@Override
+		public float get(int id, int other) {
+			return getNormalized(other, id);
+		}
+	});
+	/**
+	 * the aggregation of the values of multi-column comparisons
+	 */
+	private EProjection aggregation = EProjection.SUM;
 
 	private final Function2<Integer, Integer, String> cell2Label = new Function2<Integer, Integer, String>() {
 		@Override
@@ -98,9 +116,20 @@ public abstract class ADataDomainDataValues implements IDataValues, Function2<In
 			return Float.NaN;
 		if (recordID == null || recordID < 0 || recordID >= records)
 			return Float.NaN;
+		IFloatMatrix m = getNormalizedMatrix();
+		if (m != null)
+			return m.get(recordID.intValue(), dimensionID.intValue());
 		return table.getNormalizedValue(dimensionID, recordID);
 	}
 
+	/**
+	 * @return an optional snapshot of the normalized values, rows = records, columns = dimensions, to read through
+	 *         instead of the table
+	 */
+	protected IFloatMatrix getNormalizedMatrix() {
+		return null;
+	}
+
 	public IDType getIDType(EDimension dim) {
 		return dim.select(d.getDimensionIDType(), d.getRecordIDType());
 	}
@@ -140,32 +169,47 @@ public abstract class ADataDomainDataValues implements IDataValues, Function2<In
 			return Floats.compare(getNormalized(dim, a, other), getNormalized(dim, b, other));
 		default:
 			//
-			float a_sum = getCached(dim, a, otherData);
-			float b_sum = getCached(dim, b, otherData);
-			return Floats.compare(a_sum, b_sum);
+			Aggregates aggregates = dim.select(dimAggregates, recAggregates);
+			float a_agg = aggregates.get(a, otherData, aggregation);
+			float b_agg = aggregates.get(b, otherData, aggregation);
+			return Floats.compare(a_agg, b_agg);
 		}
 	}
 
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		double[] r = new double[size];
+		switch (otherData.size()) {
+		case 0:
+			for (int i = 0; i < size; ++i)
+				r[i] = ids[i];
+			break;
+		case 1:
+			Integer other = otherData.iterator().next();
+			for (int i = 0; i < size; ++i)
+				r[i] = getNormalized(dim, ids[i], other);
+			break;
+		default:
+			return dim.select(dimAggregates, recAggregates).get(ids, size, otherData, aggregation);
+		}
+		return r;
+	}
 
-	private float getCached(EDimension dim, int a, ITypedCollection otherData) {
-		IntObjectHashMap cache = dim.select(dimFullCompareCache, recFullCompareCache);
-		int size = getDefaultGroups(dim.opposite()).size();
-		if (otherData.size() != size)
-			return sum(dim, a, otherData);
-		if (cache.containsKey(a))
-			return (Float) cache.get(a);
-		float sum = sum(dim, a, otherData);
-		cache.put(a, sum);
-		return sum;
+	/**
+	 * @param aggregation
+	 *            setter, see {@link #aggregation}
+	 */
+	@Override
+	public void setAggregation(EProjection aggregation) {
+		this.aggregation = aggregation;
 	}
 
-	private float sum(EDimension dim, int a, ITypedCollection otherData) {
-		// mean values
-		float a_sum = 0;
-		for (Integer other : otherData) {
-			a_sum += getNormalized(dim, a, other);
-		}
-		return a_sum;
+	/**
+	 * @return the aggregation of multi-column comparisons, see {@link #aggregation}
+	 */
+	@Override
+	public EProjection getAggregation() {
+		return aggregation;
 	}
 
 	private float getNormalized(EDimension dim, int a, Integer other) {
@@ -184,15 +228,32 @@ public abstract class ADataDomainDataValues implements IDataValues, Function2<In
 		b.put("dimensions.idType", dimData.getIdType());
 		b.put("records", recData);
 		b.put("records.idType", recData.getIdType());
-		if (dimData.getIdType() != getIDType(EDimension.DIMENSION)) { // swapped
-			b.put(Function2.class, Functions2s.swap(this));
-			b.put("cell2color", Functions2s.swap(this));
-			b.put("cell2label", Functions2s.swap(this.cell2Label));
-		} else {
-			b.put(Function2.class, this);
-			b.put("cell2color", this);
-			b.put("cell2label", this.cell2Label);
-		}
+		final boolean swapped = dimData.getIdType() != getIDType(EDimension.DIMENSION);
+		Function2<Integer, Integer, Color> cell2color = RGBATiles.colors(this, dimData, recData,
+				swapped ? Functions2s.swap(this) : this);
+		b.put(Function2.class, cell2color);
+		b.put("cell2color", cell2color);
+		b.put("cell2label", swapped ? Functions2s.swap(this.cell2Label) : this.cell2Label);
+	}
+
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		boolean swapped = dimData.getIdType() != getIDType(EDimension.DIMENSION);
+		RGBATiles.fill(dimData, recData, swapped, getCellColors(), target);
+		return true;
+	}
+
+	/**
+	 * @return the colors of the cells used by {@link #fillRGBA(TypedList, TypedList, int[])}, by default the ones of
+	 *         {@link #apply(Integer, Integer)}
+	 */
+	protected RGBATiles.ICells getCellColors() {
+		return new RGBATiles.ICells() {
+			@Override
+			public int rgba(int recordID, int dimensionID) {
+				return ColorLookupTable.pack(apply(recordID, dimensionID));
+			}
+		};
 	}
 
 	@Override
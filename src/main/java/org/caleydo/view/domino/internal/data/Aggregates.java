@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
+import org.caleydo.core.util.function.DoubleStatistics;
+import org.caleydo.view.domino.api.model.typed.ITypedCollection;
+import org.caleydo.view.domino.api.model.typed.TypedCollections;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
+import org.caleydo.view.domino.internal.util.QuantileSketch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * cache of the aggregated values of ids over a subset of the other dimension, e.g. the mean of a row over the
+ * selected columns, used as sort keys.
+ *
+ * The aggregates are stored per subset and aggregation in a primitive array indexed by id and are computed on demand,
+ * in parallel for bulk requests. A subset is identified by its ids regardless of their order, such that resorting
+ * by the same columns in a different order reuses the aggregates.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class Aggregates {
+	/**
+	 * maximal number of cached subsets
+	 */
+	private static final int MAX_SUBSETS = 8;
+
+	/**
+	 * source of the values to aggregate
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface IValues {
+		/**
+		 * @return the normalized value of the given id and the id of the other dimension
+		 */
+		float get(int id, int other);
+	}
+
+	private final IValues values;
+	/**
+	 * lookup of the subset of a collection by identity, to avoid hashing the same collection for every comparison
+	 */
+	private final Cache<ITypedCollection, IDSetKey> subsets = CacheBuilder.newBuilder().weakKeys()
+			.maximumSize(MAX_SUBSETS).build();
+	private final Cache<Key, Entry> entries = CacheBuilder.newBuilder().maximumSize(MAX_SUBSETS).build();
+
+	public Aggregates(IValues values) {
+		this.values = values;
+	}
+
+	/**
+	 * @param others
+	 *            the subset of the other dimension
+	 * @param aggregation
+	 *            {@link EProjection#SUM} is the plain sum, in which {@link Float#NaN} values propagate, the others
+	 *            skip {@link Float#NaN} values
+	 * @return the aggregated value of the given id
+	 */
+	public float get(int id, ITypedCollection others, EProjection aggregation) {
+		Entry e = entry(others, aggregation);
+		synchronized (e) {
+			if (e.isComputed(id))
+				return e.get(id);
+		}
+		float v = aggregate(id, e.key.subset.ids(), aggregation, createSketch(aggregation));
+		synchronized (e) {
+			e.set(id, v);
+		}
+		return v;
+	}
+
+	/**
+	 * bulk version of {@link #get(int, ITypedCollection, EProjection)}
+	 *
+	 * @param ids
+	 * @param size
+	 *            the number of ids to use
+	 * @return the aggregated value of each id
+	 */
+	public double[] get(int[] ids, int size, ITypedCollection others, EProjection aggregation) {
+		Entry e = entry(others, aggregation);
+		double[] r = new double[size];
+		int[] missing = new int[size];
+		int m = 0;
+		synchronized (e) {
+			for (int i = 0; i < size; ++i) {
+				if (e.isComputed(ids[i]))
+					r[i] = e.get(ids[i]);
+				else
+					missing[m++] = i;
+			}
+		}
+		if (m == 0)
+			return r;
+		final float[] computed = new float[m];
+		AggregateTask task = new AggregateTask(ids, missing, e.key.subset.ids(), aggregation, computed, 0, m);
+		if (Parallel.isWorthIt((long) m * e.key.subset.ids().length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+		synchronized (e) {
+			for (int k = 0; k < m; ++k) {
+				int i = missing[k];
+				e.set(ids[i], computed[k]);
+				r[i] = computed[k];
+			}
+		}
+		return r;
+	}
+
+	private Entry entry(ITypedCollection others, EProjection aggregation) {
+		IDSetKey subset = subsets.getIfPresent(others);
+		if (subset == null) {
+			subset = new IDSetKey(TypedCollections.toArray(others));
+			subsets.put(others, subset);
+		}
+		Key key = new Key(subset, aggregation);
+		synchronized (entries) {
+			Entry e = entries.getIfPresent(key);
+			if (e == null) {
+				e = new Entry(key);
+				entries.put(key, e);
+			}
+			return e;
+		}
+	}
+
+	private static QuantileSketch createSketch(EProjection aggregation) {
+		return aggregation.isQuantile() ? new QuantileSketch() : null;
+	}
+
+	/**
+	 * @param sketch
+	 *            reusable sketch for quantile based aggregations
+	 */
+	float aggregate(int id, int[] others, EProjection aggregation, QuantileSketch sketch) {
+		if (aggregation == EProjection.SUM) {
+			float sum = 0;
+			for (int other : others)
+				sum += values.get(id, other);
+			return sum;
+		}
+		if (sketch != null) {
+			sketch.clear();
+			for (int other : others)
+				sketch.add(values.get(id, other));
+			return (float) aggregation.select(sketch);
+		}
+		DoubleStatistics.Builder b = DoubleStatistics.builder();
+		for (int other : others) {
+			float v = values.get(id, other);
+			if (!Float.isNaN(v))
+				b.add(v);
+		}
+		return (float) aggregation.select(b.build());
+	}
+
+	private static final class Key {
+		private final IDSetKey subset;
+		private final EProjection aggregation;
+
+		Key(IDSetKey subset, EProjection aggregation) {
+			this.subset = subset;
+			this.aggregation = aggregation;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * subset.hashCode() + aggregation.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			return aggregation == o.aggregation && subset.equals(o.subset);
+		}
+	}
+
+	/**
+	 * the aggregates of a subset by id, guarded by itself
+	 */
+	private static final class Entry {
+		private final Key key;
+		private float[] values = new float[0];
+		private final BitSet computed = new BitSet();
+
+		Entry(Key key) {
+			this.key = key;
+		}
+
+		boolean isComputed(int id) {
+			return id >= 0 && computed.get(id);
+		}
+
+		float get(int id) {
+			return values[id];
+		}
+
+		void set(int id, float value) {
+			if (id < 0)
+				return;
+			if (id >= values.length)
+				values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+			values[id] = value;
+			computed.set(id);
+		}
+	}
+
+	/**
+	 * computes the missing aggregates in parallel
+	 */
+	private final class AggregateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * minimal number of values per task
+		 */
+		private static final int LEAF_CELLS = 1 << 16;
+		private final int[] ids;
+		private final int[] missing;
+		private final int[] others;
+		private final EProjection aggregation;
+		private final float[] target;
+		private final int from;
+		private final int to;
+
+		AggregateTask(int[] ids, int[] missing, int[] others, EProjection aggregation, float[] target, int from,
+				int to) {
+			this.ids = ids;
+			this.missing = missing;
+			this.others = others;
+			this.aggregation = aggregation;
+			this.target = target;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || (long) (to - from) * others.length <= LEAF_CELLS || !inForkJoinPool()) {
+				QuantileSketch sketch = createSketch(aggregation);
+				for (int k = from; k < to; ++k)
+					target[k] = aggregate(ids[missing[k]], others, aggregation, sketch);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new AggregateTask(ids, missing, others, aggregation, target, from, mid), new AggregateTask(ids,
+					missing, others, aggregation, target, mid, to));
+		}
+	}
+}
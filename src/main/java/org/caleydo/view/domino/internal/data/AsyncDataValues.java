@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.core.util.color.Color;
+import org.caleydo.core.util.logging.Logger;
+import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext.Builder;
+import org.caleydo.view.domino.api.model.typed.ITypedCollection;
+import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
+import org.caleydo.view.domino.api.model.typed.TypedList;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * placeholder of a {@link IDataValues}, which is expensive to create and thus loaded in the background.
+ *
+ * Until the values are loaded, it behaves like an unsorted data set of the given default groups, which is visualized
+ * using the {@link #PLACEHOLDER} visualization showing the progress. The owner starts the loading using
+ * {@link #start(ICallback)}, cancels it using {@link #cancel(ICallback)} and swaps in the loaded values in the callback.
+ * If the loading fails, the placeholder shows the error until the loading is started again.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class AsyncDataValues implements IDataValues {
+	/**
+	 * id of the visualization used while loading
+	 */
+	public static final String PLACEHOLDER = "placeholder";
+
+	private static final Logger log = Logger.create(AsyncDataValues.class);
+
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Domino Data Loader");
+			t.setDaemon(true);
+			t.setPriority(Thread.NORM_PRIORITY - 1);
+			return t;
+		}
+	});
+
+	/**
+	 * monitor of a loading process
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface IMonitor {
+		/**
+		 * @param progress
+		 *            the done fraction in [0,1]
+		 */
+		void setProgress(float progress);
+
+		/**
+		 * @return whether the loading was canceled and should stop by throwing a {@link CancellationException}
+		 */
+		boolean isCanceled();
+	}
+
+	/**
+	 * monitor, which is never canceled
+	 */
+	public static final IMonitor NO_MONITOR = new IMonitor() {
+		@Override
+		public void setProgress(float progress) {
+
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return false;
+		}
+	};
+
+	public interface ILoader {
+		/**
+		 * loads the values in a background thread
+		 *
+		 * @throws CancellationException
+		 *             if the monitor was canceled
+		 */
+		IDataValues load(IMonitor monitor);
+	}
+
+	public interface ICallback {
+		/**
+		 * called in the loading thread when the values are loaded
+		 */
+		void onLoaded(AsyncDataValues values, IDataValues loaded);
+
+		/**
+		 * called in the loading thread if the loading failed, see {@link AsyncDataValues#getError()}
+		 */
+		void onFailed(AsyncDataValues values, RuntimeException error);
+	}
+
+	private final String label;
+	private final Color color;
+	private final TypedGroupSet dimGroups;
+	private final TypedGroupSet recGroups;
+	private final ILoader loader;
+
+	private volatile IDataValues loaded;
+	/**
+	 * the error of the last loading process if it failed
+	 */
+	private volatile RuntimeException error;
+	/**
+	 * the current loading process, guarded by this
+	 */
+	private Monitor current;
+	/**
+	 * the ones waiting for the values, guarded by this
+	 */
+	private final List<ICallback> callbacks = new ArrayList<>(1);
+
+	public AsyncDataValues(String label, Color color, TypedGroupSet dimGroups, TypedGroupSet recGroups,
+			ILoader loader) {
+		this.label = label;
+		this.color = color;
+		this.dimGroups = dimGroups;
+		this.recGroups = recGroups;
+		this.loader = loader;
+	}
+
+	/**
+	 * starts loading in the background if not already loading, the callback is called immediately if already loaded.
+	 * A failed loading is started again
+	 *
+	 * @param callback
+	 *            called if the values are loaded
+	 */
+	public void start(final ICallback callback) {
+		IDataValues r;
+		synchronized (this) {
+			r = loaded;
+			if (r == null) {
+				callbacks.add(callback);
+				if (current == null) {
+					error = null;
+					run(current = new Monitor());
+				}
+				return;
+			}
+		}
+		callback.onLoaded(this, r);
+	}
+
+	/**
+	 * runs the given task in the background using the loader threads
+	 */
+	static void execute(Runnable task) {
+		EXECUTOR.execute(task);
+	}
+
+	private void run(final Monitor monitor) {
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (monitor.isCanceled())
+						return;
+					IDataValues r = loader.load(monitor);
+					List<ICallback> toNotify;
+					synchronized (AsyncDataValues.this) {
+						if (monitor.isCanceled())
+							return;
+						loaded = r;
+						toNotify = ImmutableList.copyOf(callbacks);
+						callbacks.clear();
+					}
+					monitor.setProgress(1);
+					for (ICallback callback : toNotify)
+						callback.onLoaded(AsyncDataValues.this, r);
+				} catch (CancellationException e) {
+					// canceled
+				} catch (RuntimeException e) {
+					log.error("can't load " + label, e);
+					fail(monitor, e);
+				} finally {
+					synchronized (AsyncDataValues.this) {
+						if (current == monitor)
+							current = null;
+					}
+				}
+			}
+		});
+	}
+
+	private void fail(Monitor monitor, RuntimeException e) {
+		List<ICallback> toNotify;
+		synchronized (this) {
+			if (monitor.isCanceled())
+				return;
+			error = e;
+			toNotify = ImmutableList.copyOf(callbacks);
+			callbacks.clear();
+		}
+		for (ICallback callback : toNotify)
+			callback.onFailed(this, e);
+	}
+
+	/**
+	 * removes the given callback and cancels the current loading process if no one else is waiting for it, it can be
+	 * restarted using {@link #start(ICallback)}
+	 */
+	public synchronized void cancel(ICallback callback) {
+		callbacks.remove(callback);
+		if (current == null || !callbacks.isEmpty())
+			return;
+		current.canceled = true;
+		current = null;
+	}
+
+	/**
+	 * @return the default groups before the values are loaded
+	 */
+	public TypedGroupSet getInitialGroups(EDimension dim) {
+		return dim.select(dimGroups, recGroups);
+	}
+
+	public boolean isLoaded() {
+		return loaded != null;
+	}
+
+	/**
+	 * @return whether the last loading process failed
+	 */
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	/**
+	 * @return the error of the last loading process or null if it didn't fail
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+
+	/**
+	 * @return the loaded values or null if not yet loaded
+	 */
+	public IDataValues getLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * @return the progress of the current loading process in [0,1]
+	 */
+	public synchronized float getProgress() {
+		if (loaded != null)
+			return 1;
+		return current == null ? 0 : current.progress;
+	}
+
+	@Override
+	public String getLabel() {
+		IDataValues l = loaded;
+		return l != null ? l.getLabel() : label;
+	}
+
+	@Override
+	public Color getColor() {
+		IDataValues l = loaded;
+		return l != null ? l.getColor() : color;
+	}
+
+	@Override
+	public TypedGroupSet getDefaultGroups(EDimension dim) {
+		IDataValues l = loaded;
+		return l != null ? l.getDefaultGroups(dim) : dim.select(dimGroups, recGroups);
+	}
+
+	@Override
+	public int compare(EDimension dim, int a, int b, ITypedCollection otherData) {
+		IDataValues l = loaded;
+		return l != null ? l.compare(dim, a, b, otherData) : Integer.compare(a, b);
+	}
+
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		IDataValues l = loaded;
+		if (l != null)
+			return l.getSortKeys(dim, ids, size, otherData);
+		double[] r = new double[size];
+		for (int i = 0; i < size; ++i)
+			r[i] = ids[i];
+		return r;
+	}
+
+	@Override
+	public String getExtensionID() {
+		IDataValues l = loaded;
+		return l != null ? l.getExtensionID() : PLACEHOLDER;
+	}
+
+	@Override
+	public void fill(Builder b, TypedList dimData, TypedList recData, boolean[] existNeigbhor, boolean mediumTranspose) {
+		IDataValues l = loaded;
+		if (l != null) {
+			l.fill(b, dimData, recData, existNeigbhor, mediumTranspose);
+			return;
+		}
+		b.put(AsyncDataValues.class, this);
+		b.put("dimensions", dimData);
+		b.put("records", recData);
+	}
+
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		IDataValues l = loaded;
+		return l != null && l.fillRGBA(dimData, recData, target);
+	}
+
+	@Override
+	public Collection<String> getDefaultVisualization() {
+		IDataValues l = loaded;
+		return l != null ? l.getDefaultVisualization() : Collections.singleton(PLACEHOLDER);
+	}
+
+	@Override
+	public boolean apply(String input) {
+		IDataValues l = loaded;
+		return l != null ? l.apply(input) : PLACEHOLDER.equals(input);
+	}
+
+	@Override
+	public void onSelectionChanged(boolean selected) {
+		IDataValues l = loaded;
+		if (l != null)
+			l.onSelectionChanged(selected);
+	}
+
+	private static final class Monitor implements IMonitor {
+		private volatile boolean canceled = false;
+		private volatile float progress = 0;
+
+		@Override
+		public void setProgress(float progress) {
+			this.progress = progress;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncDataValues [label=" + label + ", loaded=" + (loaded != null) + ", failed=" + (error != null) + "]";
+	}
+}
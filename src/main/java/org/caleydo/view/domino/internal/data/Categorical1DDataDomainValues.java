@@ -131,13 +131,7 @@ public class Categorical1DDataDomainValues extends A1DDataDomainValues {
 	}
 
 	public int indexOf(Integer id) {
-		int i = 0;
-		for (TypedSetGroup g : groups()) {
-			if (g.contains(id))
-				return i;
-			i++;
-		}
-		return -1;
+		return id == null ? -1 : groups.groupIndexOf(id.intValue());
 	}
 
 	@Override
@@ -6,9 +6,13 @@
 package org.caleydo.view.domino.internal.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
 
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.data.collection.column.container.CategoricalClassDescription;
@@ -19,17 +23,15 @@ import org.caleydo.core.data.perspective.table.TablePerspective;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.util.collection.Pair;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext.Builder;
+import org.caleydo.view.domino.api.model.typed.TypedCollections;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.api.model.typed.TypedSet;
 import org.caleydo.view.domino.api.model.typed.TypedSetGroup;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multiset;
 
 /**
  * @author Samuel Gratzl
@@ -63,58 +65,48 @@ public class Categorical2DDataDomainValues extends ADataDomainDataValues {
 	 * @return
 	 */
 	private Pair<TypedGroupSet, TypedGroupSet> extractGroups(TablePerspective t) {
-		Multimap<Object, Integer> dimGroups = HashMultimap.create();
-		Multimap<Object, Integer> recGroups = HashMultimap.create();
-
 		TypedSet d = TypedSet.of(t.getDimensionPerspective().getVirtualArray());
 		TypedSet r = TypedSet.of(t.getRecordPerspective().getVirtualArray());
-		List<Multiset<Object>> rows = new ArrayList<>(r.size());
-		for (int i = 0; i < r.size(); ++i)
-			rows.add(HashMultiset.create());
-
-		for (Integer dim : d) {
-			Multiset<Object> col = HashMultiset.create();
-
-			int i = 0;
-			for (Integer rec : r) {
-				Object v = getRaw(dim, rec);
-				col.add(v);
-				rows.get(i++).add(v);
-			}
-
-			Object mostFrequent = mostFrequent(col);
-			dimGroups.put(mostFrequent, dim);
-		}
-
-		{
-			int i = 0;
-			for (Integer rec : r) {
-				Multiset<Object> row = rows.get(i++);
+		List<CategoryProperty<?>> categories = getCategories(getDataDomain());
 
-				Object mostFrequent = mostFrequent(row);
-				recGroups.put(mostFrequent, rec);
-			}
-		}
+		Modes modes = new Modes(this, TypedCollections.toArray(d), TypedCollections.toArray(r), categories);
+		ModesTask task = new ModesTask(modes, 0, modes.dims.length);
+		if (Parallel.isWorthIt((long) modes.dims.length * modes.recs.length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+		int[] recModes = modes.rowModes(task.rowCounts);
 
-		List<CategoryProperty<?>> categories = getCategories(getDataDomain());
-		return Pair
-				.make(toGroups(dimGroups, categories, d.getIdType()), toGroups(recGroups, categories, r.getIdType()));
+		return Pair.make(toGroups(modes.dims, modes.dimModes, categories, d.getIdType()),
+				toGroups(modes.recs, recModes, categories, r.getIdType()));
 	}
 
 	/**
-	 * @param dimGroups2
+	 * @param ids
+	 * @param modes
+	 *            the category code of the most frequent category of each id
 	 * @param categories
 	 * @param idType
 	 * @return
 	 */
-	private TypedGroupSet toGroups(Multimap<Object, Integer> groups, List<CategoryProperty<?>> categories,
-			IDType idType) {
+	private static TypedGroupSet toGroups(int[] ids, int[] modes, List<CategoryProperty<?>> categories, IDType idType) {
+		List<ImmutableSet.Builder<Integer>> groups = new ArrayList<>(categories.size());
+		int[] sizes = new int[categories.size()];
+		for (int i = 0; i < categories.size(); ++i)
+			groups.add(ImmutableSet.<Integer> builder());
+		for (int i = 0; i < ids.length; ++i) {
+			int code = modes[i];
+			if (code >= categories.size()) // unknown category
+				continue;
+			groups.get(code).add(ids[i]);
+			sizes[code]++;
+		}
 		List<TypedSetGroup> r = new ArrayList<>(categories.size());
-		for (CategoryProperty<?> category : categories) {
-			Collection<Integer> ids = groups.get(category.getCategory());
-			if (ids == null || ids.isEmpty())
+		for (int i = 0; i < categories.size(); ++i) {
+			if (sizes[i] == 0)
 				continue;
-			r.add(new TypedSetGroup(ImmutableSet.copyOf(ids), idType, category.getCategoryName(), category.getColor()));
+			CategoryProperty<?> category = categories.get(i);
+			r.add(new TypedSetGroup(groups.get(i).build(), idType, category.getCategoryName(), category.getColor()));
 		}
 		return new TypedGroupSet(ImmutableList.copyOf(r));
 	}
@@ -129,20 +121,117 @@ public class Categorical2DDataDomainValues extends ADataDomainDataValues {
 	}
 
 	/**
-	 * @param col
-	 * @return
+	 * the shared input and output of the {@link ModesTask}s.
+	 *
+	 * The raw values are encoded as dense category codes, i.e. the index of the category, such that the most frequent
+	 * category can be counted in primitive arrays. Values, which aren't a known category, share the code
+	 * {@link #unknown}.
+	 */
+	private static final class Modes {
+		private final Categorical2DDataDomainValues data;
+		private final int[] dims;
+		private final int[] recs;
+		private final Map<Object, Integer> codes;
+		private final int unknown;
+		/**
+		 * the code of the most frequent category of each dimension
+		 */
+		private final int[] dimModes;
+
+		Modes(Categorical2DDataDomainValues data, int[] dims, int[] recs, List<CategoryProperty<?>> categories) {
+			this.data = data;
+			this.dims = dims;
+			this.recs = recs;
+			this.codes = new HashMap<>(categories.size() * 2);
+			for (int i = 0; i < categories.size(); ++i)
+				if (!codes.containsKey(categories.get(i).getCategory()))
+					codes.put(categories.get(i).getCategory(), i);
+			this.unknown = categories.size();
+			this.dimModes = new int[dims.length];
+		}
+
+		int codes() {
+			return unknown + 1;
+		}
+
+		/**
+		 * encodes and counts the given range of dimensions
+		 *
+		 * @param rowCounts
+		 *            the accumulated counts per record and code, row by row
+		 */
+		void count(int from, int to, int[] rowCounts) {
+			final int k = codes();
+			final int[] colCounts = new int[k];
+			for (int i = from; i < to; ++i) {
+				final Integer dim = dims[i];
+				Arrays.fill(colCounts, 0);
+				for (int j = 0; j < recs.length; ++j) {
+					Integer c = codes.get(data.getRaw(dim, recs[j]));
+					final int code = c == null ? unknown : c.intValue();
+					colCounts[code]++;
+					rowCounts[j * k + code]++;
+				}
+				dimModes[i] = mode(colCounts, 0, k);
+			}
+		}
+
+		int[] rowModes(int[] rowCounts) {
+			final int k = codes();
+			int[] r = new int[recs.length];
+			for (int j = 0; j < recs.length; ++j)
+				r[j] = mode(rowCounts, j * k, k);
+			return r;
+		}
+
+		/**
+		 * @return the most frequent code, the smallest one in case of ties
+		 */
+		private static int mode(int[] counts, int offset, int k) {
+			int top = 0;
+			for (int i = 1; i < k; ++i)
+				if (counts[offset + i] > counts[offset + top])
+					top = i;
+			return top;
+		}
+	}
+
+	/**
+	 * column parallel computation of the modes, each leaf accumulates the row counts of its columns, which are summed
+	 * up while joining
 	 */
-	private <T> T mostFrequent(Multiset<T> col) {
-		T top = null;
-		int c = 0;
-		for (T elem : col.elementSet()) {
-			int elemC = col.count(elem);
-			if (elemC > c) {
-				top = elem;
-				c = elemC;
+	private static final class ModesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * minimal number of cells per task
+		 */
+		private static final int LEAF_CELLS = 1 << 18;
+		private final Modes modes;
+		private final int from;
+		private final int to;
+		private int[] rowCounts;
+
+		ModesTask(Modes modes, int from, int to) {
+			this.modes = modes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || (long) (to - from) * modes.recs.length <= LEAF_CELLS || !inForkJoinPool()) {
+				rowCounts = new int[modes.recs.length * modes.codes()];
+				modes.count(from, to, rowCounts);
+				return;
 			}
+			final int mid = (from + to) >>> 1;
+			ModesTask left = new ModesTask(modes, from, mid);
+			ModesTask right = new ModesTask(modes, mid, to);
+			invokeAll(left, right);
+			rowCounts = left.rowCounts;
+			for (int i = 0; i < rowCounts.length; ++i)
+				rowCounts[i] += right.rowCounts[i];
 		}
-		return top;
 	}
 
 	@Override
@@ -13,6 +13,7 @@ import java.util.Collections;
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.util.collection.Pair;
 import org.caleydo.core.util.color.Color;
+import org.caleydo.core.util.function.ArrayDoubleList;
 import org.caleydo.core.util.function.DoubleFunctions;
 import org.caleydo.core.util.function.Function2;
 import org.caleydo.core.util.function.IDoubleList;
@@ -23,28 +24,49 @@ import org.caleydo.view.domino.api.model.typed.ITypedCollection;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.internal.Constants;
+import org.caleydo.view.domino.internal.data.AsyncDataValues.IMonitor;
+import org.caleydo.view.domino.internal.util.ColorLookupTable;
 
 import com.google.common.base.Function;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.primitives.Floats;
-import com.jogamp.common.util.IntObjectHashMap;
 
 /**
  * @author Samuel Gratzl
  *
  */
-public class CorrelatedDataValues implements IDataValues, Function2<Integer, Integer, Color> {
+public class CorrelatedDataValues implements IDataValues, IHasAggregation, Function2<Integer, Integer, Color> {
 	private final Numerical2DDataDomainValues wrappee;
 	private final EDimension along;
 	private final ECorrelation correlation;
 	private final IInvertableDoubleFunction normalize = DoubleFunctions.normalize(-1, 1);
 	private final TypedList other;
 
-	private final IntObjectHashMap dimFullCompareCache = new IntObjectHashMap();
-	private final IntObjectHashMap recFullCompareCache = new IntObjectHashMap();
+	/**
+	 * the sort keys of multi-column comparisons, the same for both dimensions, since symmetric
+	 */
+	private final Aggregates aggregates = new Aggregates(new Aggregates.IValues() {
+		@Override
+		public float get(int id, int other) {
+			return getNormalized(id, other);
+		}
+	});
+	/**
+	 * the aggregation of the values of multi-column comparisons
+	 */
+	private EProjection aggregation = EProjection.SUM;
+
+	/**
+	 * lazy precomputed correlations of all default ids
+	 */
+	private volatile CorrelationMatrix matrix;
+	private volatile boolean matrixMissing = false;
 
+	/**
+	 * fallback for ids not part of {@link #matrix}
+	 */
 	private final LoadingCache<Pair<Integer, Integer>, Double> cache = CacheBuilder.newBuilder().build(
 			new CacheLoader<Pair<Integer, Integer>, Double>() {
 				@Override
@@ -52,6 +74,20 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 					return compute(key.getFirst(), key.getSecond());
 				}
 	});
+	/**
+	 * the prepared vectors of the fallback, e.g. the ranks for spearman, computed once per id
+	 */
+	private final LoadingCache<Integer, IDoubleList> vectors = CacheBuilder.newBuilder().maximumSize(1 << 12)
+			.build(new CacheLoader<Integer, IDoubleList>() {
+				@Override
+				public IDoubleList load(Integer key) throws Exception {
+					IDoubleList l = asList(key);
+					double[] r = new double[l.size()];
+					for (int i = 0; i < r.length; ++i)
+						r[i] = l.getPrimitive(i);
+					return new ArrayDoubleList(correlation.prepare(r));
+				}
+			});
 
 	private final Function2<Integer, Integer, Float> toRaw = new Function2<Integer, Integer, Float>() {
 		@Override
@@ -76,6 +112,35 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 		this.correlation = proj;
 	}
 
+	/**
+	 * @return the correlated data values, which are computed in the background including all default correlations
+	 */
+	public static AsyncDataValues async(final Numerical2DDataDomainValues wrappee, final ECorrelation proj,
+			final EDimension along, final TypedList other) {
+		final TypedGroupSet groups = wrappee.getDefaultGroups(along.opposite());
+		return new AsyncDataValues(label(wrappee, proj, along), wrappee.getColor(), groups, groups,
+				new AsyncDataValues.ILoader() {
+					@Override
+					public IDataValues load(IMonitor monitor) {
+						CorrelatedDataValues r = new CorrelatedDataValues(wrappee, proj, along, other);
+						r.prepare(monitor);
+						return r;
+					}
+				});
+	}
+
+	/**
+	 * computes all default correlations up front
+	 */
+	private void prepare(IMonitor monitor) {
+		synchronized (this) {
+			if (matrix == null && !matrixMissing) {
+				matrix = createMatrix(monitor);
+				matrixMissing = matrix == null;
+			}
+		}
+	}
+
 	/**
 	 * @param first
 	 * @return
@@ -86,23 +151,62 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 			public Double apply(Integer input) {
 				Integer dimensionID = along.select(id, input);
 				Integer recordID = along.select(input, id);
-				Float f = wrappee.getRaw(dimensionID, recordID);
-				return f == null ? Double.NaN : f.doubleValue();
+				if (isInvalid(dimensionID) || isInvalid(recordID))
+					return Double.NaN;
+				return (double) wrappee.getRawValue(dimensionID.intValue(), recordID.intValue());
 			}
 		});
 	}
 
+	private CorrelationMatrix getMatrix() {
+		CorrelationMatrix m = matrix;
+		if (m != null || matrixMissing)
+			return m;
+		prepare(AsyncDataValues.NO_MONITOR);
+		return matrix;
+	}
+
+	private CorrelationMatrix createMatrix(IMonitor monitor) {
+		TypedGroupSet ids = getDefaultGroups(along.opposite());
+		int[] r = new int[ids.size()];
+		int i = 0;
+		for (Integer id : ids)
+			r[i++] = id.intValue();
+		if (i < r.length) // concurrently modified
+			return null;
+		return CorrelationMatrix.create(r, new CorrelationMatrix.IVectors() {
+			@Override
+			public int size() {
+				return other.size();
+			}
+
+			@Override
+			public void fill(int id, double[] target) {
+				int k = 0;
+				for (Integer input : other) {
+					int o = input.intValue();
+					int dimensionID = along.select(id, o);
+					int recordID = along.select(o, id);
+					target[k++] = dimensionID < 0 || recordID < 0 ? Double.NaN : wrappee.getRawValue(dimensionID,
+							recordID);
+				}
+			}
+		}, correlation, monitor);
+	}
+
 	protected Double compute(Integer first, Integer second) {
-		IDoubleList a = asList(first);
-		IDoubleList b = asList(second);
-		if (a == null || b == null)
-			return Double.NaN;
-		return correlation.apply(a, b);
+		IDoubleList a = vectors.getUnchecked(first);
+		IDoubleList b = vectors.getUnchecked(second);
+		// the prepared vectors just need to be linearly correlated
+		return ECorrelation.PEARSON.apply(a, b);
 	}
 
 	public Double getRaw(Integer dimensionID, Integer recordID) {
 		if (isInvalid(dimensionID) || isInvalid(recordID))
 			return null;
+		CorrelationMatrix m = getMatrix();
+		if (m != null && m.contains(dimensionID.intValue()) && m.contains(recordID.intValue()))
+			return (double) m.get(dimensionID.intValue(), recordID.intValue());
 		Integer a = dimensionID.compareTo(recordID) < 0 ? dimensionID : recordID;
 		Integer b = dimensionID.compareTo(recordID) < 0 ? recordID : dimensionID;
 		Double r = cache.getUnchecked(Pair.make(a, b));
@@ -154,6 +258,10 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 
 	@Override
 	public String getLabel() {
+		return label(wrappee, correlation, along);
+	}
+
+	private static String label(Numerical2DDataDomainValues wrappee, ECorrelation correlation, EDimension along) {
 		return String.format("%s %s correlated using %s", wrappee.getLabel(), correlation.getLabel(), along.name());
 	}
 
@@ -172,31 +280,46 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 			return Floats.compare(getNormalized(a, other), getNormalized(b, other));
 		default:
 			//
-			float a_sum = getCached(dim, a, otherData);
-			float b_sum = getCached(dim, b, otherData);
-			return Floats.compare(a_sum, b_sum);
+			float a_agg = aggregates.get(a, otherData, aggregation);
+			float b_agg = aggregates.get(b, otherData, aggregation);
+			return Floats.compare(a_agg, b_agg);
+		}
+	}
+
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		double[] r = new double[size];
+		switch (otherData.size()) {
+		case 0:
+			for (int i = 0; i < size; ++i)
+				r[i] = ids[i];
+			break;
+		case 1:
+			Integer other = otherData.iterator().next();
+			for (int i = 0; i < size; ++i)
+				r[i] = getNormalized(ids[i], other);
+			break;
+		default:
+			return aggregates.get(ids, size, otherData, aggregation);
 		}
+		return r;
 	}
 
-	private float getCached(EDimension dim, int a, ITypedCollection otherData) {
-		IntObjectHashMap cache = dim.select(dimFullCompareCache, recFullCompareCache);
-		int size = getDefaultGroups(dim.opposite()).size();
-		if (otherData.size() != size)
-			return sum(dim, a, otherData);
-		if (cache.containsKey(a))
-			return (Float) cache.get(a);
-		float sum = sum(dim, a, otherData);
-		cache.put(a, sum);
-		return sum;
+	/**
+	 * @param aggregation
+	 *            setter, see {@link #aggregation}
+	 */
+	@Override
+	public void setAggregation(EProjection aggregation) {
+		this.aggregation = aggregation;
 	}
 
-	private float sum(EDimension dim, int a, ITypedCollection otherData) {
-		// mean values
-		float a_sum = 0;
-		for (Integer other : otherData) {
-			a_sum += getNormalized(a, other);
-		}
-		return a_sum;
+	/**
+	 * @return the aggregation of multi-column comparisons, see {@link #aggregation}
+	 */
+	@Override
+	public EProjection getAggregation() {
+		return aggregation;
 	}
 
 	@Override
@@ -211,11 +334,30 @@ public class CorrelatedDataValues implements IDataValues, Function2<Integer, Int
 		b.put("dimensions.idType", dimData.getIdType());
 		b.put("records", recData);
 		b.put("records.idType", recData.getIdType());
-		b.put(Function2.class, this);
-		b.put("cell2color", this);
+		Function2<Integer, Integer, Color> cell2color = RGBATiles.colors(this, dimData, recData, this);
+		b.put(Function2.class, cell2color);
+		b.put("cell2color", cell2color);
 		b.put("cell2label", this.cell2Label);
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		final ColorLookupTable table = ColorLookupTable.get();
+		final CorrelationMatrix m = getMatrix();
+		// symmetric, thus never swapped
+		RGBATiles.fill(dimData, recData, false, new RGBATiles.ICells() {
+			@Override
+			public int rgba(int recordID, int dimensionID) {
+				if (recordID < 0 || dimensionID < 0)
+					return table.applyRGBA(Float.NaN);
+				if (m != null && m.contains(recordID) && m.contains(dimensionID))
+					return table.applyRGBA((float) normalize.apply(m.get(dimensionID, recordID)));
+				return table.applyRGBA(getNormalized(dimensionID, recordID));
+			}
+		}, target);
+		return true;
+	}
+
 	@Override
 	public Collection<String> getDefaultVisualization() {
 		return Collections.singleton("heatmap");
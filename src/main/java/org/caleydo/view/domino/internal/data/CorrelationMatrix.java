@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.caleydo.view.domino.api.model.typed.util.IntIntMap;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
+import org.caleydo.view.domino.internal.data.AsyncDataValues.IMonitor;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * all pairs correlation matrix of a set of vectors.
+ *
+ * The vectors are centered and normalized once, such that a correlation is a single dot product. The pairs are
+ * computed in {@link #BLOCK}x{@link #BLOCK} tiles, either all up front in parallel and stored as a symmetric packed
+ * float[] or, if there are too many, on demand tile by tile in a bounded cache.
+ *
+ * Missing values are handled as in {@link ECorrelation}, i.e. the vectors are centered using the mean of their valid
+ * values and a pair just considers the positions in which both are valid.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class CorrelationMatrix {
+	/**
+	 * maximal number of cells of the prepared vectors
+	 */
+	public static final long MAX_CELLS = FloatMatrix.MAX_CELLS;
+	/**
+	 * maximal number of pairs to compute up front
+	 */
+	private static final long MAX_PAIRS = 1L << 24;
+	private static final int BLOCK = 64;
+	/**
+	 * maximal number of on demand computed tiles to keep
+	 */
+	private static final int MAX_TILES = 1 << 12;
+
+	private final int n;
+	private final int m;
+	/**
+	 * id to position lookup for compact id ranges, -1 if not part, null if the ids are sparse
+	 */
+	private final int[] index;
+	/**
+	 * id to position lookup for sparse ids
+	 */
+	private final IntIntMap sparseIndex;
+	/**
+	 * the prepared vectors, row-major
+	 */
+	private final float[] data;
+	/**
+	 * whether a vector has no missing values and a norm of 1, such that the correlation is the plain dot product
+	 */
+	private final boolean[] clean;
+
+	/**
+	 * the packed upper triangle of all pairs or null if computed on demand
+	 */
+	private final float[] values;
+	private final LoadingCache<Long, float[]> tiles;
+
+	/**
+	 * source of the vectors to correlate
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface IVectors {
+		/**
+		 * @return the number of elements of a vector
+		 */
+		int size();
+
+		/**
+		 * fills the vector of the given id, {@link Double#NaN} for missing values
+		 */
+		void fill(int id, double[] target);
+	}
+
+	private CorrelationMatrix(int[] ids, IVectors vectors, ECorrelation correlation, IMonitor monitor) {
+		this.n = ids.length;
+		this.m = vectors.size();
+		int min = Integer.MAX_VALUE;
+		int max = -1;
+		for (int id : ids) {
+			min = Math.min(min, id);
+			max = Math.max(max, id);
+		}
+		if (min >= 0 && max < n * 4L + 64) {
+			this.index = new int[max + 1];
+			this.sparseIndex = null;
+			Arrays.fill(index, -1);
+			for (int i = 0; i < n; ++i)
+				index[ids[i]] = i;
+		} else {
+			this.index = null;
+			this.sparseIndex = new IntIntMap(n);
+			for (int i = 0; i < n; ++i)
+				sparseIndex.put(ids[i], i);
+		}
+
+		this.data = new float[n * m];
+		this.clean = new boolean[n];
+		double[] v = new double[m];
+		for (int i = 0; i < n; ++i) {
+			checkCanceled(monitor);
+			vectors.fill(ids[i], v);
+			clean[i] = prepare(correlation.prepare(v), data, i * m);
+		}
+
+		final long tileCount = (n + BLOCK - 1) / BLOCK;
+		if ((long) n * (n + 1) / 2 <= MAX_PAIRS) {
+			this.values = new float[(int) ((long) n * (n + 1) / 2)];
+			this.tiles = null;
+			final long pairs = tileCount * (tileCount + 1) / 2 * BLOCK * BLOCK;
+			TileRowsTask task = new TileRowsTask(0, (int) tileCount, monitor, new AtomicInteger());
+			if (Parallel.isWorthIt(pairs))
+				Parallel.pool().invoke(task);
+			else
+				task.compute();
+		} else {
+			this.values = null;
+			this.tiles = CacheBuilder.newBuilder().maximumSize(MAX_TILES).build(new CacheLoader<Long, float[]>() {
+				@Override
+				public float[] load(Long key) {
+					float[] r = new float[BLOCK * BLOCK];
+					computeTile((int) (key.longValue() >>> 32), (int) key.longValue(), r);
+					return r;
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return the matrix or null if the vectors are too large to be prepared
+	 */
+	public static CorrelationMatrix create(int[] ids, IVectors vectors, ECorrelation correlation) {
+		return create(ids, vectors, correlation, AsyncDataValues.NO_MONITOR);
+	}
+
+	/**
+	 * @param monitor
+	 *            reports the computed tile rows
+	 * @return the matrix or null if the vectors are too large to be prepared
+	 * @throws CancellationException
+	 *             if the monitor was canceled
+	 */
+	public static CorrelationMatrix create(int[] ids, IVectors vectors, ECorrelation correlation, IMonitor monitor) {
+		if ((long) ids.length * vectors.size() > MAX_CELLS)
+			return null;
+		return new CorrelationMatrix(ids, vectors, correlation, monitor);
+	}
+
+	private static void checkCanceled(IMonitor monitor) {
+		if (monitor.isCanceled())
+			throw new CancellationException();
+	}
+
+	/**
+	 * centers the given vector and normalizes it if it is clean
+	 *
+	 * @return whether the vector is clean
+	 */
+	private static boolean prepare(double[] v, float[] target, int offset) {
+		final int m = v.length;
+		int valid = 0;
+		double sum = 0;
+		for (double d : v)
+			if (!Double.isNaN(d)) {
+				sum += d;
+				valid++;
+			}
+		final double mean = valid == 0 ? 0 : sum / valid;
+		double sq = 0;
+		for (int k = 0; k < m; ++k) {
+			double d = v[k] - mean;
+			v[k] = d;
+			if (!Double.isNaN(d))
+				sq += d * d;
+		}
+		final boolean clean = valid == m && sq > 0;
+		final double scale = clean ? 1 / Math.sqrt(sq) : 1;
+		for (int k = 0; k < m; ++k)
+			target[offset + k] = (float) (v[k] * scale);
+		return clean;
+	}
+
+	public boolean contains(int id) {
+		return indexOf(id) >= 0;
+	}
+
+	/**
+	 * @return the position of the given id or -1 if not part
+	 */
+	private int indexOf(int id) {
+		if (index == null)
+			return sparseIndex.get(id, -1);
+		return id >= 0 && id < index.length ? index[id] : -1;
+	}
+
+	/**
+	 * @return the correlation of the given ids or {@link Float#NaN} if one is not part of this matrix
+	 */
+	public float get(int a, int b) {
+		int i = indexOf(a);
+		int j = indexOf(b);
+		if (i < 0 || j < 0)
+			return Float.NaN;
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		if (values != null)
+			return values[packed(i, j)];
+		long key = ((long) (i / BLOCK) << 32) | (j / BLOCK);
+		return tiles.getUnchecked(key)[(i % BLOCK) * BLOCK + (j % BLOCK)];
+	}
+
+	/**
+	 * @return the position of the pair i &lt;= j in the packed upper triangle
+	 */
+	private int packed(int i, int j) {
+		return (int) ((long) i * n - (long) i * (i - 1) / 2 + (j - i));
+	}
+
+	/**
+	 * computes the given tile, either into the packed triangle or into the given tile buffer
+	 */
+	private void computeTile(int ti, int tj, float[] tile) {
+		final int i0 = ti * BLOCK, i1 = Math.min(n, i0 + BLOCK);
+		final int j0 = tj * BLOCK, j1 = Math.min(n, j0 + BLOCK);
+		for (int i = i0; i < i1; ++i) {
+			for (int j = Math.max(i, j0); j < j1; ++j) {
+				float r = (float) correlate(i, j);
+				if (tile == null)
+					values[packed(i, j)] = r;
+				else
+					tile[(i - i0) * BLOCK + (j - j0)] = r;
+			}
+		}
+	}
+
+	private double correlate(int i, int j) {
+		final int a = i * m;
+		final int b = j * m;
+		if (clean[i] && clean[j]) {
+			double dot = 0;
+			for (int k = 0; k < m; ++k)
+				dot += (double) data[a + k] * data[b + k];
+			return dot;
+		}
+		int valid = 0;
+		double sq_a = 0, sq_b = 0, dot = 0;
+		for (int k = 0; k < m; ++k) {
+			double x = data[a + k];
+			double y = data[b + k];
+			if (!Double.isNaN(x) && !Double.isNaN(y)) {
+				sq_a += x * x;
+				sq_b += y * y;
+				dot += x * y;
+				valid++;
+			}
+		}
+		if (valid == 0)
+			return 0;
+		return dot / (Math.sqrt(sq_a) * Math.sqrt(sq_b));
+	}
+
+	/**
+	 * computes all tiles of a range of tile rows
+	 */
+	private final class TileRowsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final IMonitor monitor;
+		/**
+		 * the number of computed tile rows of all tasks
+		 */
+		private final AtomicInteger done;
+
+		TileRowsTask(int from, int to, IMonitor monitor, AtomicInteger done) {
+			this.from = from;
+			this.to = to;
+			this.monitor = monitor;
+			this.done = done;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || !inForkJoinPool()) {
+				final int tiles = (n + BLOCK - 1) / BLOCK;
+				for (int ti = from; ti < to; ++ti) {
+					checkCanceled(monitor);
+					for (int tj = ti; tj < tiles; ++tj)
+						computeTile(ti, tj, null);
+					monitor.setProgress(done.incrementAndGet() / (float) tiles);
+				}
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new TileRowsTask(from, mid, monitor, done), new TileRowsTask(mid, to, monitor, done));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CorrelationMatrix [n=" + n + ", m=" + m + ", full=" + (values != null) + "]";
+	}
+}
@@ -38,6 +38,22 @@ public enum ECorrelation implements ILabeled {
 		throw new IllegalStateException();
 	}
 
+	/**
+	 * prepares a vector for a correlation matrix, such that the pearson correlation of the prepared vectors is this
+	 * correlation
+	 *
+	 * @return the prepared vector, possibly the given one
+	 */
+	double[] prepare(double[] v) {
+		switch (this) {
+		case PEARSON:
+			return v;
+		case SPEARMAN:
+			return IndexedSort.averageRanks(v);
+		}
+		throw new IllegalStateException();
+	}
+
 	private double pearson(final IDoubleList a, final IDoubleList b) {
 		final double a_mean = mean(a.iterator());
 		final double b_mean = mean(b.iterator());
@@ -80,33 +96,14 @@ public enum ECorrelation implements ILabeled {
 
 	/**
 	 * @param a
-	 * @return
+	 * @return the fractional ranks of the values, see {@link IndexedSort#averageRanks(double[])}
 	 */
 	private static double[] toRank(IDoubleList a) {
 		final int size = a.size();
-		double[] r = new double[size];
-		int[] indices = IndexedSort.sortIndex(a);
-		// convert entries to their rank position starting with 1 and in case of ties use mean
-		for(int i = 0; i < size; ++i) {
-			int index = indices[i];
-			double v = a.getPrimitive(index);
-			int ilast = i + 1;
-			if (ilast < size) {
-				int in = indices[ilast];
-				double vlast = a.getPrimitive(in);
-				while (vlast == v && ilast < size - 1) {
-					ilast++;
-					in = indices[ilast];
-					vlast = a.getPrimitive(in);
-				}
-			}
-			double rank = (ilast == (i + 1)) ? i + 1 : (ilast + i + 1) / (double) (ilast - i);
-			for (int j = i; j < ilast; ++j)
-				r[indices[j]] = rank;
-			i = ilast - 1;
-		}
-
-		return r;
+		double[] values = new double[size];
+		for (int i = 0; i < size; ++i)
+			values[i] = a.getPrimitive(i);
+		return IndexedSort.averageRanks(values);
 	}
 
 	public static void main(String[] args) {
@@ -8,17 +8,68 @@ package org.caleydo.view.domino.internal.data;
 import org.apache.commons.lang.WordUtils;
 import org.caleydo.core.util.base.ILabeled;
 import org.caleydo.core.util.function.DoubleStatistics;
+import org.caleydo.view.domino.internal.util.QuantileSketch;
 
 /**
  * @author Samuel Gratzl
  *
  */
 public enum EProjection implements ILabeled {
-	MEAN, MIN, MAX, SUM, VARIANCE, SD;
+	MEAN, MIN, MAX, SUM, VARIANCE, SD, MEDIAN, Q1, Q3, IQR, P10, P90;
 
 	@Override
 	public String getLabel() {
-		return WordUtils.capitalize(name().toLowerCase());
+		switch (this) {
+		case Q1:
+			return "1st Quartile";
+		case Q3:
+			return "3rd Quartile";
+		case IQR:
+			return "IQR";
+		case P10:
+			return "10th Percentile";
+		case P90:
+			return "90th Percentile";
+		default:
+			return WordUtils.capitalize(name().toLowerCase());
+		}
+	}
+
+	/**
+	 * @return whether this projection is based on quantiles, see {@link #select(QuantileSketch)}, otherwise on
+	 *         {@link DoubleStatistics}, see {@link #select(DoubleStatistics)}
+	 */
+	public boolean isQuantile() {
+		switch (this) {
+		case MEDIAN:
+		case Q1:
+		case Q3:
+		case IQR:
+		case P10:
+		case P90:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public double select(QuantileSketch sketch) {
+		switch (this) {
+		case MEDIAN:
+			return sketch.quantile(0.5);
+		case Q1:
+			return sketch.quantile(0.25);
+		case Q3:
+			return sketch.quantile(0.75);
+		case IQR:
+			return sketch.quantile(0.75) - sketch.quantile(0.25);
+		case P10:
+			return sketch.quantile(0.1);
+		case P90:
+			return sketch.quantile(0.9);
+		default:
+			throw new IllegalStateException(name() + " is not a quantile");
+		}
 	}
 
 	public double select(DoubleStatistics stats) {
@@ -35,7 +86,8 @@ public enum EProjection implements ILabeled {
 			return stats.getVar();
 		case SD:
 			return stats.getSd();
+		default:
+			throw new IllegalStateException(name() + " is not a statistic");
 		}
-		throw new IllegalStateException();
 	}
 }
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.nio.FloatBuffer;
+
+/**
+ * an immutable dense primitive snapshot of a float matrix, stored row-major and lazily column-major, invalid values
+ * are stored as {@link Float#NaN}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class FloatMatrix implements IFloatMatrix {
+	/**
+	 * maximal number of cells of a snapshot, i.e. 256MB per layout
+	 */
+	public static final long MAX_CELLS = 1L << 26;
+
+	private final int rows;
+	private final int columns;
+	private final float[] rowMajor;
+	private volatile float[] columnMajor;
+
+	/**
+	 * @param rows
+	 * @param columns
+	 * @param rowMajor
+	 *            the values, which must not be modified afterwards
+	 */
+	public FloatMatrix(int rows, int columns, float[] rowMajor) {
+		assert (long) rows * columns == rowMajor.length;
+		this.rows = rows;
+		this.columns = columns;
+		this.rowMajor = rowMajor;
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	@Override
+	public float get(int row, int column) {
+		if (row < 0 || row >= rows || column < 0 || column >= columns)
+			return Float.NaN;
+		return rowMajor[row * columns + column];
+	}
+
+	@Override
+	public void getRow(int row, float[] target, int offset) {
+		System.arraycopy(rowMajor, row * columns, target, offset, columns);
+	}
+
+	@Override
+	public void getColumn(int column, float[] target, int offset) {
+		float[] c = columnMajor;
+		if (c != null) {
+			System.arraycopy(c, column * rows, target, offset, rows);
+			return;
+		}
+		for (int i = 0; i < rows; ++i)
+			target[offset + i] = rowMajor[i * columns + column];
+	}
+
+	/**
+	 * @return a read only zero copy view of the given row
+	 */
+	public FloatBuffer row(int row) {
+		return FloatBuffer.wrap(rowMajor, row * columns, columns).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a read only zero copy view of the given column, creating the column-major layout if needed
+	 */
+	public FloatBuffer column(int column) {
+		return FloatBuffer.wrap(columnMajor(), column * rows, rows).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the raw row-major values, which must not be modified
+	 */
+	public float[] rowMajor() {
+		return rowMajor;
+	}
+
+	/**
+	 * @return the raw column-major values, which must not be modified
+	 */
+	public float[] columnMajor() {
+		float[] r = columnMajor;
+		if (r == null) {
+			synchronized (this) {
+				r = columnMajor;
+				if (r == null)
+					columnMajor = r = transpose();
+			}
+		}
+		return r;
+	}
+
+	private float[] transpose() {
+		float[] r = new float[rowMajor.length];
+		// blocked to stay cache friendly for both layouts
+		final int block = 64;
+		for (int i0 = 0; i0 < rows; i0 += block) {
+			final int i1 = Math.min(rows, i0 + block);
+			for (int j0 = 0; j0 < columns; j0 += block) {
+				final int j1 = Math.min(columns, j0 + block);
+				for (int i = i0; i < i1; ++i)
+					for (int j = j0; j < j1; ++j)
+						r[j * rows + i] = rowMajor[i * columns + j];
+			}
+		}
+		return r;
+	}
+
+	@Override
+	public String toString() {
+		return "FloatMatrix [rows=" + rows + ", columns=" + columns + "]";
+	}
+}
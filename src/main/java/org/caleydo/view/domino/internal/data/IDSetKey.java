@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.Arrays;
+
+/**
+ * cache key of values, which just depend on the set of ids but not on their order, e.g. a histogram.
+ *
+ * The hash combines the size, the sum and the xor of the mixed ids, thus it is computed in a single pass without
+ * sorting. The ids are compared as sets just on a hash hit.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class IDSetKey {
+	/**
+	 * the ids in their given order
+	 */
+	private final int[] ids;
+	private final long sum;
+	private final long xor;
+
+	IDSetKey(int[] ids) {
+		this.ids = ids;
+		long s = 0, x = 0;
+		for (int id : ids) {
+			long h = mix(id);
+			s += h;
+			x ^= h;
+		}
+		this.sum = s;
+		this.xor = x;
+	}
+
+	/**
+	 * @return the ids in their given order, must not be modified
+	 */
+	int[] ids() {
+		return ids;
+	}
+
+	private static long mix(int id) {
+		long z = (id & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 29)) * 0xBF58476D1CE4E5B9L;
+		return z ^ (z >>> 32);
+	}
+
+	@Override
+	public int hashCode() {
+		long h = sum * 31 + xor;
+		return (int) (h ^ (h >>> 32)) * 31 + ids.length;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IDSetKey))
+			return false;
+		IDSetKey o = (IDSetKey) obj;
+		return ids.length == o.ids.length && sum == o.sum && xor == o.xor && sameIds(ids, o.ids);
+	}
+
+	private static boolean sameIds(int[] a, int[] b) {
+		if (Arrays.equals(a, b)) // same order
+			return true;
+		int[] as = a.clone();
+		int[] bs = b.clone();
+		Arrays.sort(as);
+		Arrays.sort(bs);
+		return Arrays.equals(as, bs);
+	}
+}
@@ -27,6 +27,19 @@ public interface IDataValues extends ILabeled, IColored, Predicate<String> {
 
 	int compare(EDimension dim, int a, int b, ITypedCollection otherData);
 
+	/**
+	 * materializes the order of {@link #compare(EDimension, int, int, ITypedCollection)} as primitive keys, such that
+	 * {@link Double#compare(double, double)} of two keys is consistent with it
+	 *
+	 * @param dim
+	 * @param ids
+	 * @param size
+	 *            the number of ids to use
+	 * @param otherData
+	 * @return the sort key of each id
+	 */
+	double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData);
+
 	/**
 	 * @return
 	 */
@@ -40,6 +53,17 @@ public interface IDataValues extends ILabeled, IColored, Predicate<String> {
 	 */
 	void fill(Builder b, TypedList dimData, TypedList recData, boolean[] existNeigbhor, boolean mediumTranspose);
 
+	/**
+	 * fills the colors of the cells of the given lists as packed RGBA ints, see {@link RGBATiles}
+	 *
+	 * @param dimData
+	 * @param recData
+	 * @param target
+	 *            row by row, i.e. target[r * dimData.size() + d]
+	 * @return whether supported, i.e. this data values are visualized as a matrix
+	 */
+	boolean fillRGBA(TypedList dimData, TypedList recData, int[] target);
+
 	Collection<String> getDefaultVisualization();
 
 	/**
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+/**
+ * read only primitive float matrix, invalid values are stored as {@link Float#NaN}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IFloatMatrix {
+	int rows();
+
+	int columns();
+
+	/**
+	 * @return the value or {@link Float#NaN} if the cell is invalid or out of range
+	 */
+	float get(int row, int column);
+
+	/**
+	 * copies the given row into the target starting at the given offset
+	 */
+	void getRow(int row, float[] target, int offset);
+
+	/**
+	 * copies the given column into the target starting at the given offset
+	 */
+	void getColumn(int column, float[] target, int offset);
+}
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+/**
+ * {@link IDataValues}, which aggregate the values of multiple columns when sorted by them
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public interface IHasAggregation {
+	/**
+	 * @return the aggregation of multi-column comparisons
+	 */
+	EProjection getAggregation();
+
+	/**
+	 * @param aggregation
+	 *            the aggregation of multi-column comparisons
+	 */
+	void setAggregation(EProjection aggregation);
+}
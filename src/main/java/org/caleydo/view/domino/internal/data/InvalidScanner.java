@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
+import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
+
+/**
+ * parallel scan for invalid, i.e. {@link Float#NaN} or infinite, values.
+ *
+ * The values are scanned in position ranges, which are distributed among the shared pool. Each range marks the
+ * positions of its invalid values in its own {@link BitSet}, which are merged while joining and finally mapped to
+ * the ids.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class InvalidScanner {
+	/**
+	 * minimal number of values per task
+	 */
+	private static final int LEAF_CELLS = 1 << 16;
+
+	private InvalidScanner() {
+
+	}
+
+	/**
+	 * source of the values of a vector
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface IValues {
+		float get(int id);
+	}
+
+	/**
+	 * source of the values of a matrix
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface ICells {
+		float get(int rowID, int columnID);
+	}
+
+	public static boolean isInvalid(float v) {
+		return Float.isNaN(v) || Float.isInfinite(v);
+	}
+
+	/**
+	 * @return the ids having an invalid value
+	 */
+	public static BitSetSet scan(int[] ids, IValues values) {
+		VectorTask task = new VectorTask(ids, values, 0, ids.length);
+		if (Parallel.isWorthIt(ids.length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+		return toIds(task.invalid, ids);
+	}
+
+	/**
+	 * @return the row ids and the column ids, which have at least one invalid cell
+	 */
+	public static BitSetSet[] scan(int[] rows, int[] columns, ICells cells) {
+		MatrixTask task = new MatrixTask(rows, columns, cells, 0, rows.length);
+		if (Parallel.isWorthIt((long) rows.length * columns.length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+		return new BitSetSet[] { toIds(task.invalidRows, rows), toIds(task.invalidColumns, columns) };
+	}
+
+	private static BitSetSet toIds(BitSet positions, int[] ids) {
+		BitSetSet r = new BitSetSet();
+		for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1))
+			r.add(ids[i]);
+		return r.runOptimize();
+	}
+
+	private static final class VectorTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] ids;
+		private final IValues values;
+		private final int from;
+		private final int to;
+		private BitSet invalid;
+
+		VectorTask(int[] ids, IValues values, int from, int to) {
+			this.ids = ids;
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LEAF_CELLS || !inForkJoinPool()) {
+				invalid = new BitSet(to);
+				for (int i = from; i < to; ++i)
+					if (isInvalid(values.get(ids[i])))
+						invalid.set(i);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			VectorTask left = new VectorTask(ids, values, from, mid);
+			VectorTask right = new VectorTask(ids, values, mid, to);
+			invokeAll(left, right);
+			invalid = left.invalid;
+			invalid.or(right.invalid);
+		}
+	}
+
+	/**
+	 * row parallel scan, which merges the invalid columns of its parts
+	 */
+	private static final class MatrixTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] rows;
+		private final int[] columns;
+		private final ICells cells;
+		private final int from;
+		private final int to;
+		private BitSet invalidRows;
+		private BitSet invalidColumns;
+
+		MatrixTask(int[] rows, int[] columns, ICells cells, int from, int to) {
+			this.rows = rows;
+			this.columns = columns;
+			this.cells = cells;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || (long) (to - from) * columns.length <= LEAF_CELLS || !inForkJoinPool()) {
+				invalidRows = new BitSet(to);
+				invalidColumns = new BitSet(columns.length);
+				for (int i = from; i < to; ++i) {
+					final int row = rows[i];
+					for (int j = 0; j < columns.length; ++j) {
+						if (isInvalid(cells.get(row, columns[j]))) {
+							invalidRows.set(i);
+							invalidColumns.set(j);
+						}
+					}
+				}
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			MatrixTask left = new MatrixTask(rows, columns, cells, from, mid);
+			MatrixTask right = new MatrixTask(rows, columns, cells, mid, to);
+			invokeAll(left, right);
+			invalidRows = left.invalidRows;
+			invalidRows.or(right.invalidRows);
+			invalidColumns = left.invalidColumns;
+			invalidColumns.or(right.invalidColumns);
+		}
+	}
+}
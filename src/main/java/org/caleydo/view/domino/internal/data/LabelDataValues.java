@@ -7,10 +7,7 @@ package org.caleydo.view.domino.internal.data;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Objects;
-import java.util.Set;
 
-import org.apache.commons.lang.StringUtils;
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.id.IDCategory;
 import org.caleydo.core.id.IDMappingManagerRegistry;
@@ -32,6 +29,7 @@ public class LabelDataValues implements IDataValues {
 	private final IDCategory category;
 	private final TypedGroupSet data;
 	private final IIDTypeMapper<Integer, String> mapper;
+	private final LabelSortKeys sortKeys;
 
 	public LabelDataValues(IDCategory category) {
 		this.category = category;
@@ -39,7 +37,7 @@ public class LabelDataValues implements IDataValues {
 
 		this.mapper = IDMappingManagerRegistry.get().getIDMappingManager(category)
 				.getIDTypeMapper(data.getIdType(), category.getHumanReadableIDType());
-
+		this.sortKeys = LabelSortKeys.of(category);
 	}
 
 	@Override
@@ -54,9 +52,12 @@ public class LabelDataValues implements IDataValues {
 
 	@Override
 	public int compare(EDimension dim, int a, int b, ITypedCollection otherData) {
-		String av = get(a);
-		String bv = get(b);
-		return Objects.compare(av, bv, String.CASE_INSENSITIVE_ORDER);
+		return sortKeys.compare(a, b);
+	}
+
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		return sortKeys.getRanks(ids, size);
 	}
 
 	@Override
@@ -99,15 +100,17 @@ public class LabelDataValues implements IDataValues {
 		return true;
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		return false;
+	}
+
 	@Override
 	public void onSelectionChanged(boolean selected) {
 
 	}
 
 	public String get(int id) {
-		Set<String> r = mapper.apply(id);
-		if (r == null)
-			return "Unnamed";
-		return StringUtils.join(r, ", ");
+		return LabelSortKeys.toLabel(mapper.apply(id));
 	}
 }
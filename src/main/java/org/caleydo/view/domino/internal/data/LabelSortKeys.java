@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.caleydo.core.id.IDCategory;
+import org.caleydo.core.id.IDMappingManagerRegistry;
+import org.caleydo.core.id.IIDTypeMapper;
+import org.caleydo.view.domino.api.model.typed.MappingCaches;
+import org.caleydo.view.domino.api.model.typed.util.IntIntMap;
+import org.caleydo.view.domino.internal.util.IndexedSort;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * case insensitive sort keys of the human readable labels of an {@link IDCategory}, shared by all
+ * {@link LabelDataValues} of the category.
+ *
+ * The label of an id is resolved just once and all known labels are ranked together, such that sorting compares
+ * int ranks instead of mapping and comparing strings. The ranks are recomputed lazily if new ids were added. Ids
+ * without a label rank as {@link #UNNAMED} and are resolved again, as their mapping may appear later on. All labels
+ * are dropped if the mappings changed, see {@link MappingCaches#version()}.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class LabelSortKeys {
+	public static final String UNNAMED = "Unnamed";
+
+	private static final LoadingCache<IDCategory, LabelSortKeys> INSTANCES = CacheBuilder.newBuilder().weakKeys()
+			.build(new CacheLoader<IDCategory, LabelSortKeys>() {
+				@Override
+				public LabelSortKeys load(IDCategory category) {
+					return new LabelSortKeys(category);
+				}
+			});
+
+	private final IDCategory category;
+	/**
+	 * the mapper of the current {@link #version}, guarded by this
+	 */
+	private IIDTypeMapper<Integer, String> mapper;
+	/**
+	 * the version of the mappings the labels were resolved with, guarded by this
+	 */
+	private int version;
+
+	/**
+	 * id to the index of its resolved label, the ids are sparse and large thus hashed, guarded by this
+	 */
+	private final IntIntMap index = new IntIntMap();
+	private final List<String> labels = new ArrayList<>();
+	/**
+	 * the dense rank by label index, valid if not {@link #dirty}, guarded by this
+	 */
+	private int[] ranks = new int[0];
+	private int unnamedRank = 0;
+	private boolean dirty = false;
+
+	private LabelSortKeys(IDCategory category) {
+		this.category = category;
+		this.version = MappingCaches.version();
+		this.mapper = createMapper(category);
+	}
+
+	private static IIDTypeMapper<Integer, String> createMapper(IDCategory category) {
+		return IDMappingManagerRegistry.get().getIDMappingManager(category)
+				.getIDTypeMapper(category.getPrimaryMappingType(), category.getHumanReadableIDType());
+	}
+
+	/**
+	 * @return the shared sort keys of the given category
+	 */
+	public static LabelSortKeys of(IDCategory category) {
+		return INSTANCES.getUnchecked(category);
+	}
+
+	/**
+	 * @param mapped
+	 *            the mapped human readable ids of an id or null if unmapped
+	 * @return the label as shown by {@link LabelDataValues#get(int)}
+	 */
+	public static String toLabel(Set<String> mapped) {
+		if (mapped == null)
+			return UNNAMED;
+		return StringUtils.join(mapped, ", ");
+	}
+
+	/**
+	 * compares the labels of the given ids case insensitive
+	 */
+	public synchronized int compare(int a, int b) {
+		checkVersion();
+		String al = resolve(a);
+		String bl = resolve(b);
+		if (dirty) // ranks are rebuilt in bulk, avoid doing that per comparison
+			return String.CASE_INSENSITIVE_ORDER.compare(al, bl);
+		return Integer.compare(rank(a), rank(b));
+	}
+
+	/**
+	 * @param ids
+	 * @param size
+	 *            the number of ids to use
+	 * @return the dense rank of the label of each id
+	 */
+	public synchronized double[] getRanks(int[] ids, int size) {
+		checkVersion();
+		for (int i = 0; i < size; ++i)
+			resolve(ids[i]);
+		if (dirty)
+			updateRanks();
+		double[] r = new double[size];
+		for (int i = 0; i < size; ++i)
+			r[i] = rank(ids[i]);
+		return r;
+	}
+
+	/**
+	 * drops all labels and the mapper if the mappings changed in the meantime
+	 */
+	private void checkVersion() {
+		final int current = MappingCaches.version();
+		if (current == version)
+			return;
+		version = current;
+		mapper = createMapper(category);
+		index.clear();
+		labels.clear();
+		dirty = false;
+	}
+
+	/**
+	 * @return the cached or newly resolved label of the given id
+	 */
+	private String resolve(int id) {
+		int i = index.get(id, -1);
+		if (i >= 0)
+			return labels.get(i);
+		Set<String> mapped = mapper.apply(id);
+		if (mapped == null)
+			return UNNAMED;
+		String label = toLabel(mapped);
+		index.put(id, labels.size());
+		labels.add(label);
+		dirty = true;
+		return label;
+	}
+
+	private int rank(int id) {
+		int i = index.get(id, -1);
+		return i >= 0 ? ranks[i] : unnamedRank;
+	}
+
+	/**
+	 * ranks all known labels together with {@link #UNNAMED}
+	 */
+	private void updateRanks() {
+		final int n = labels.size();
+		List<String> all = new ArrayList<>(n + 1);
+		all.addAll(labels);
+		all.add(UNNAMED);
+		double[] r = IndexedSort.denseRanks(all, String.CASE_INSENSITIVE_ORDER);
+		if (ranks.length < n)
+			ranks = Arrays.copyOf(ranks, Math.max(n, ranks.length * 2));
+		for (int i = 0; i < n; ++i)
+			ranks[i] = (int) r[i];
+		unnamedRank = (int) r[n];
+		dirty = false;
+	}
+}
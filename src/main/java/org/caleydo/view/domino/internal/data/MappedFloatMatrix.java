@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * an off-heap float matrix backed by a memory mapped cache file, which is reused as long as its header matches the
+ * source, i.e. its shape, the identity of the source as given by the caller and a hash of sampled values. The source
+ * is read completely just if the file is (re)created.
+ *
+ * The values are stored in {@link #TILE}x{@link #TILE} row-major tiles, such that both row and column scans touch
+ * just a few contiguous pages per tile. The tiles are stored band by band, i.e. all tiles of the first {@link #TILE}
+ * rows first, and the file is mapped in chunks of whole bands.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class MappedFloatMatrix implements IFloatMatrix {
+	private static final int MAGIC = 0x444D464D; // DMFM
+	private static final int VERSION = 3;
+	private static final int TILE_BITS = 6;
+	public static final int TILE = 1 << TILE_BITS;
+	private static final int TILE_MASK = TILE - 1;
+	private static final int TILE_CELLS = TILE * TILE;
+	/**
+	 * page aligned header size
+	 */
+	private static final int HEADER = 4096;
+	/**
+	 * maximal size of a mapped chunk
+	 */
+	private static final long MAX_CHUNK = 1L << 30;
+	/**
+	 * number of sampled cells to detect changed values of the same source
+	 */
+	private static final int SAMPLES = 1024;
+	private static final int HEADER_USED = 5 * 4 + 2 * 8;
+	/**
+	 * one lock per cache file, such that concurrent users of the same file don't create it at the same time
+	 */
+	private static final Cache<String, Object> LOCKS = CacheBuilder.newBuilder().weakValues().build();
+
+	private final int rows;
+	private final int columns;
+	private final int tileColumns;
+	private final int bandsPerChunk;
+	private final FloatBuffer[] chunks;
+
+	private MappedFloatMatrix(int rows, int columns, FloatBuffer[] chunks) {
+		this.rows = rows;
+		this.columns = columns;
+		this.tileColumns = tiles(columns);
+		this.bandsPerChunk = bandsPerChunk(columns);
+		this.chunks = chunks;
+	}
+
+	/**
+	 * source of the values of a matrix
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface ISource {
+		/**
+		 * @return the value of the given cell, {@link Float#NaN} if invalid
+		 */
+		float get(int row, int column);
+	}
+
+	/**
+	 * @return whether a matrix with the given number of columns can be mapped
+	 */
+	public static boolean canMap(int columns) {
+		return tiles(columns) * (long) TILE_CELLS * 4 <= MAX_CHUNK;
+	}
+
+	/**
+	 * opens the given cache file if it is compatible to the source or (re)creates it from the source, as the source
+	 * might be read completely, not to be called from the render thread
+	 *
+	 * @param file
+	 *            the cache file
+	 * @param identity
+	 *            cheap fingerprint of the source, e.g. derived from the modification time of the file it was loaded
+	 *            from, which changes if the values change
+	 * @return the mapped matrix
+	 * @throws IOException
+	 *             if the cache file can't be created or mapped
+	 */
+	public static MappedFloatMatrix open(File file, int rows, int columns, long identity, ISource source)
+			throws IOException {
+		if (!canMap(columns))
+			throw new IOException("too many columns to be mapped: " + columns);
+		final long samples = sample(rows, columns, source);
+		final Path path = file.toPath().toAbsolutePath();
+		synchronized (lock(path)) {
+			if (isValid(path, rows, columns, identity, samples))
+				return map(path, rows, columns);
+			Path tmp = create(path, rows, columns, identity, samples, source);
+			try {
+				Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				try {
+					Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+				} catch (IOException e2) {
+					// e.g. the old file is still mapped on Windows, use the new one directly
+					tmp.toFile().deleteOnExit();
+					return map(tmp, rows, columns);
+				}
+			} catch (IOException e) {
+				tmp.toFile().deleteOnExit();
+				return map(tmp, rows, columns);
+			}
+			return map(path, rows, columns);
+		}
+	}
+
+	private static Object lock(Path path) throws IOException {
+		try {
+			return LOCKS.get(path.toString(), new Callable<Object>() {
+				@Override
+				public Object call() {
+					return new Object();
+				}
+			});
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static int tiles(int n) {
+		return (n + TILE_MASK) >>> TILE_BITS;
+	}
+
+	private static int bandsPerChunk(int columns) {
+		final long band = tiles(columns) * (long) TILE_CELLS * 4;
+		return (int) Math.max(1, MAX_CHUNK / band);
+	}
+
+	/**
+	 * @return a 64 bit FNV-1a hash of {@link #SAMPLES} cells at fixed pseudo random positions, including the corners
+	 */
+	private static long sample(int rows, int columns, ISource source) {
+		long h = 0xcbf29ce484222325L;
+		if (rows == 0 || columns == 0)
+			return h;
+		long state = 0x9E3779B97F4A7C15L;
+		for (int k = 0; k < SAMPLES; ++k) {
+			int r, c;
+			if (k == 0) {
+				r = 0;
+				c = 0;
+			} else if (k == 1) {
+				r = rows - 1;
+				c = columns - 1;
+			} else {
+				state = state * 6364136223846793005L + 1442695040888963407L;
+				r = (int) ((state >>> 33) % rows);
+				c = (int) ((state >>> 1 & 0x7FFFFFFFL) % columns);
+			}
+			h = (h ^ Float.floatToIntBits(source.get(r, c))) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private static boolean isValid(Path path, int rows, int columns, long identity, long samples) throws IOException {
+		if (!Files.isRegularFile(path) || Files.size(path) != fileSize(rows, columns))
+			return false;
+		try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer b = ByteBuffer.allocate(HEADER_USED).order(ByteOrder.nativeOrder());
+			while (b.hasRemaining() && c.read(b) >= 0)
+				;
+			b.flip();
+			return b.remaining() == HEADER_USED && b.getInt() == MAGIC && b.getInt() == VERSION && b.getInt() == rows
+					&& b.getInt() == columns && b.getInt() == TILE && b.getLong() == identity
+					&& b.getLong() == samples;
+		}
+	}
+
+	private static long fileSize(int rows, int columns) {
+		return HEADER + tiles(rows) * (long) tiles(columns) * TILE_CELLS * 4;
+	}
+
+	/**
+	 * @return the created unique temporary file to be moved to the given path
+	 */
+	private static Path create(Path path, int rows, int columns, long identity, long samples, ISource source)
+			throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tmp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+		boolean done = false;
+		final int tileColumns = tiles(columns);
+		final int bands = tiles(rows);
+		final int bandsPerChunk = bandsPerChunk(columns);
+		final int bandCells = tileColumns * TILE_CELLS;
+		try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			float[] band = new float[bandCells];
+			float[] row = new float[columns];
+			for (int b0 = 0; b0 < bands; b0 += bandsPerChunk) {
+				final int b1 = Math.min(bands, b0 + bandsPerChunk);
+				MappedByteBuffer m = c.map(MapMode.READ_WRITE, HEADER + b0 * (long) bandCells * 4, (b1 - b0)
+						* (long) bandCells * 4);
+				FloatBuffer f = m.order(ByteOrder.nativeOrder()).asFloatBuffer();
+				for (int bi = b0; bi < b1; ++bi) {
+					fillBand(bi, rows, columns, source, row, band);
+					f.put(band);
+				}
+				m.force();
+			}
+			// write the header last, such that an aborted creation is never valid
+			ByteBuffer h = ByteBuffer.allocate(HEADER_USED).order(ByteOrder.nativeOrder());
+			h.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(TILE).putLong(identity)
+					.putLong(samples);
+			h.flip();
+			c.write(h, 0);
+			c.force(true);
+			done = true;
+		} finally {
+			if (!done)
+				Files.deleteIfExists(tmp);
+		}
+		return tmp;
+	}
+
+	/**
+	 * fills the tiles of the given band row by row, padding with {@link Float#NaN}
+	 */
+	private static void fillBand(int band, int rows, int columns, ISource source, float[] row, float[] target) {
+		final int tileColumns = tiles(columns);
+		for (int i = 0; i < TILE; ++i) {
+			final int r = (band << TILE_BITS) + i;
+			for (int j = 0; j < columns; ++j)
+				row[j] = r < rows ? source.get(r, j) : Float.NaN;
+			for (int t = 0; t < tileColumns; ++t) {
+				final int offset = t * TILE_CELLS + i * TILE;
+				final int from = t << TILE_BITS;
+				final int n = Math.min(TILE, columns - from);
+				System.arraycopy(row, from, target, offset, n);
+				for (int k = n; k < TILE; ++k)
+					target[offset + k] = Float.NaN;
+			}
+		}
+	}
+
+	private static MappedFloatMatrix map(Path path, int rows, int columns) throws IOException {
+		final int bands = tiles(rows);
+		final int bandsPerChunk = bandsPerChunk(columns);
+		final long bandBytes = tiles(columns) * (long) TILE_CELLS * 4;
+		FloatBuffer[] chunks = new FloatBuffer[(bands + bandsPerChunk - 1) / bandsPerChunk];
+		// the mapping stays valid after closing the channel
+		try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
+			for (int i = 0; i < chunks.length; ++i) {
+				final int b0 = i * bandsPerChunk;
+				final int b1 = Math.min(bands, b0 + bandsPerChunk);
+				MappedByteBuffer m = c.map(MapMode.READ_ONLY, HEADER + b0 * bandBytes, (b1 - b0) * bandBytes);
+				chunks[i] = m.order(ByteOrder.nativeOrder()).asFloatBuffer();
+			}
+		}
+		return new MappedFloatMatrix(rows, columns, chunks);
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	/**
+	 * @return the index of the given cell within its chunk
+	 */
+	private int index(int row, int column) {
+		final int band = (row >>> TILE_BITS) % bandsPerChunk;
+		final int tile = band * tileColumns + (column >>> TILE_BITS);
+		return tile * TILE_CELLS + ((row & TILE_MASK) << TILE_BITS) + (column & TILE_MASK);
+	}
+
+	private FloatBuffer chunk(int row) {
+		return chunks[(row >>> TILE_BITS) / bandsPerChunk];
+	}
+
+	@Override
+	public float get(int row, int column) {
+		if (row < 0 || row >= rows || column < 0 || column >= columns)
+			return Float.NaN;
+		return chunk(row).get(index(row, column));
+	}
+
+	@Override
+	public void getRow(int row, float[] target, int offset) {
+		// a private cursor, such that concurrent reads don't interfere
+		FloatBuffer f = chunk(row).duplicate();
+		for (int from = 0; from < columns; from += TILE) {
+			f.position(index(row, from));
+			f.get(target, offset + from, Math.min(TILE, columns - from));
+		}
+	}
+
+	@Override
+	public void getColumn(int column, float[] target, int offset) {
+		for (int i = 0; i < rows; ++i) {
+			FloatBuffer f = chunk(i);
+			target[offset + i] = f.get(index(i, column));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MappedFloatMatrix [rows=" + rows + ", columns=" + columns + "]";
+	}
+}
@@ -18,6 +18,7 @@ import org.caleydo.core.util.function.MappedDoubleList;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext.Builder;
 import org.caleydo.view.domino.api.model.EDirection;
 import org.caleydo.view.domino.api.model.typed.ITypedCollection;
+import org.caleydo.view.domino.api.model.typed.TypedCollections;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.api.model.typed.TypedSet;
@@ -27,6 +28,8 @@ import org.caleydo.view.domino.internal.Constants;
 
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -35,12 +38,26 @@ import com.google.common.collect.Sets;
  *
  */
 public class Numerical1DMixin {
+	private static final int MAX_HISTS = 32;
+
 	private final INumerical1DContainer c;
 	private final int bins;
 	private final int maxBinSize;
 	private final float min, max;
 	private final int size;
 
+	/**
+	 * recently used histograms by the identity of the data list
+	 */
+	private final Cache<TypedList, Histogram> histsByList = CacheBuilder.newBuilder().weakKeys()
+			.maximumSize(MAX_HISTS).build();
+	/**
+	 * recently used histograms by the set of ids, such that a reordered list reuses the histogram, soft as the
+	 * histograms of the visible lists are held by {@link #histsByList}
+	 */
+	private final Cache<IDSetKey, Histogram> histsBySet = CacheBuilder.newBuilder().maximumSize(MAX_HISTS)
+			.softValues().build();
+
 	private final Function<Integer, Double> toRaw = new Function<Integer, Double>() {
 		@Override
 		public Double apply(Integer input) {
@@ -53,18 +70,19 @@ public class Numerical1DMixin {
 		this.bins = (int) Math.sqrt(groups.size());
 		this.min = min;
 		this.max = max;
-		this.maxBinSize = createHist(groups).getLargestValue();
+		this.maxBinSize = getHist(groups).getLargestValue();
 		this.size = groups.size();
 	}
 
-	public static TypedGroupSet extractGroups(Perspective p, INumerical1DContainer c) {
-		Set<Integer> invalid = new BitSetSet();
+	public static TypedGroupSet extractGroups(Perspective p, final INumerical1DContainer c) {
 		TypedSet d = TypedSet.of(p.getVirtualArray());
-		for (Integer id : d) {
-			float v = c.getNormalized(id);
-			if (Float.isInfinite(v) || Float.isNaN(v))
-				invalid.add(id);
-		}
+		int[] ids = TypedCollections.toArray(d);
+		Set<Integer> invalid = InvalidScanner.scan(ids, new InvalidScanner.IValues() {
+			@Override
+			public float get(int id) {
+				return c.getNormalized(id);
+			}
+		});
 		if (invalid.isEmpty())
 			return TypedGroupSet.createUngrouped(d);
 
@@ -82,16 +100,46 @@ public class Numerical1DMixin {
 		return Arrays.asList("axis", "boxandwhiskers", "kaplanmeier", "heatmap");
 	}
 
+	/**
+	 * @return the cached histogram of the given data, which is shared and must not be modified
+	 */
+	public Histogram getHist(ITypedCollection data) {
+		if (data instanceof TypedList) {
+			Histogram h = histsByList.getIfPresent(data);
+			if (h != null)
+				return h;
+		}
+		final int[] ids = TypedCollections.toArray(data);
+		// the histogram just depends on the set of ids, not on their order
+		IDSetKey key = new IDSetKey(ids);
+		Histogram h = histsBySet.getIfPresent(key);
+		if (h == null) {
+			h = createHist(ids);
+			histsBySet.put(key, h);
+		}
+		if (data instanceof TypedList)
+			histsByList.put((TypedList) data, h);
+		return h;
+	}
+
 	public Histogram createHist(ITypedCollection data) {
+		return createHist(TypedCollections.toArray(data));
+	}
+
+	private Histogram createHist(int[] ids) {
+		final int n = ids.length;
+		// bin all first, using the primitive values
+		final int[] bucket = new int[n];
+		for (int i = 0; i < n; ++i) {
+			float v = c.getNormalized(ids[i]);
+			bucket[i] = Float.isNaN(v) ? -1 : toBin(v, bins);
+		}
 		Histogram h = new Histogram(bins);
-		for (Integer id : data) {
-			float v = c.getNormalized(id.intValue());
-			if (Float.isNaN(v)) {
-				h.addNAN(id);
-			} else {
-				int bucketIndex = toBin(v, bins);
-				h.add(bucketIndex, id);
-			}
+		for (int i = 0; i < n; ++i) {
+			if (bucket[i] < 0)
+				h.addNAN(ids[i]);
+			else
+				h.add(bucket[i], ids[i]);
 		}
 		return h;
 	}
@@ -123,7 +171,7 @@ public class Numerical1DMixin {
 	}
 
 	public void fill(Builder b, TypedList data, EDimension dim, boolean[] existNeigbhor) {
-		final Histogram hist = createHist(data);
+		final Histogram hist = getHist(data);
 		b.put(Histogram.class, hist);
 		b.put("distribution.colors", getHistColors(hist, data));
 		b.put("distribution.labels", getHistLabels(hist, data));
@@ -186,5 +234,4 @@ public class Numerical1DMixin {
 			return odd;
 		}
 	}
-
 }
@@ -9,15 +9,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
-import org.caleydo.core.data.collection.EDataClass;
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.data.collection.table.NumericalTable;
-import org.caleydo.core.data.datadomain.DataSupportDefinitions;
 import org.caleydo.core.data.perspective.table.TablePerspective;
 import org.caleydo.core.util.collection.Pair;
 import org.caleydo.core.util.color.Color;
 import org.caleydo.core.util.function.Function2;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext.Builder;
+import org.caleydo.view.domino.api.model.typed.TypedCollections;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.api.model.typed.TypedSet;
@@ -25,6 +24,7 @@ import org.caleydo.view.domino.api.model.typed.TypedSetGroup;
 import org.caleydo.view.domino.api.model.typed.util.BitSetSet;
 import org.caleydo.view.domino.internal.Constants;
 import org.caleydo.view.domino.internal.prefs.MyPreferences;
+import org.caleydo.view.domino.internal.util.ColorLookupTable;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -34,15 +34,26 @@ import com.google.common.collect.Sets;
  *
  */
 public class Numerical2DDataDomainValues extends ADataDomainDataValues {
+	/**
+	 * up to this number of cells the invalid values are split into their own group, as the values are created in the
+	 * ui thread
+	 */
+	private static final long MAX_GROUP_SCAN_CELLS = 1L << 22;
+
 	private final TypedGroupSet recGroups;
 	private final TypedGroupSet dimGroups;
-	private final boolean isInteger;
+	/**
+	 * the shared snapshots of the table
+	 */
+	private final TableSnapshots snapshots;
 
 	private final Function2<Integer, Integer, Float> toRaw = new Function2<Integer, Integer, Float>() {
 
 		@Override
 		public Float apply(Integer dimensionID, Integer recordID) {
-			return getRaw(dimensionID, recordID);
+			if (isInvalid(dimensionID) || isInvalid(recordID))
+				return Float.NaN;
+			return getRawValue(dimensionID.intValue(), recordID.intValue());
 		}
 	};
 	/**
@@ -50,10 +61,17 @@ public class Numerical2DDataDomainValues extends ADataDomainDataValues {
 	 */
 	public Numerical2DDataDomainValues(TablePerspective t) {
 		super(t.getDataDomain().getLabel(), t);
-		// Pair<TypedGroupSet, TypedGroupSet> r = extractGroups(t);
-		this.recGroups = TypedGroupSet.createUngrouped(TypedSet.of(t.getRecordPerspective().getVirtualArray()));
-		this.dimGroups = TypedGroupSet.createUngrouped(TypedSet.of(t.getDimensionPerspective().getVirtualArray()));
-		this.isInteger = DataSupportDefinitions.dataClass(EDataClass.NATURAL_NUMBER).apply(t);
+		this.snapshots = TableSnapshots.of(t.getDataDomain());
+		TypedSet d = TypedSet.of(t.getDimensionPerspective().getVirtualArray());
+		TypedSet r = TypedSet.of(t.getRecordPerspective().getVirtualArray());
+		if ((long) d.size() * r.size() <= MAX_GROUP_SCAN_CELLS) {
+			Pair<TypedGroupSet, TypedGroupSet> groups = extractGroups(d, r);
+			this.dimGroups = groups.getFirst();
+			this.recGroups = groups.getSecond();
+		} else {
+			this.dimGroups = TypedGroupSet.createUngrouped(d);
+			this.recGroups = TypedGroupSet.createUngrouped(r);
+		}
 	}
 
 	@Override
@@ -73,18 +91,39 @@ public class Numerical2DDataDomainValues extends ADataDomainDataValues {
 
 	@Override
 	public Float getRaw(Integer dimensionID, Integer recordID) {
-		Object r = super.getRaw(dimensionID, recordID);
-		if (r instanceof Float)
-			return (Float) r;
-		if (r instanceof Integer && isInteger) {
-			Integer i = (Integer) r;
-			if (i.intValue() == Integer.MIN_VALUE)
+		IFloatMatrix m = snapshots.peekRaw(getDataDomain().getTable());
+		if (m != null) {
+			if (isInvalid(dimensionID) || isInvalid(recordID))
 				return Float.NaN;
-			return i.floatValue();
+			return m.get(recordID.intValue(), dimensionID.intValue());
 		}
-		if (r instanceof Number)
-			return ((Number) r).floatValue();
-		return Float.NaN;
+		return TableSnapshots.toFloat(super.getRaw(dimensionID, recordID));
+	}
+
+	/**
+	 * @return the raw value as primitive using the snapshot if already available
+	 */
+	public float getRawValue(int dimensionID, int recordID) {
+		IFloatMatrix m = snapshots.peekRaw(getDataDomain().getTable());
+		if (m != null)
+			return m.get(recordID, dimensionID);
+		return TableSnapshots.toFloat(super.getRaw(dimensionID, recordID));
+	}
+
+	/**
+	 * @return the shared snapshot of all raw values, rows = records, columns = dimensions, or null if it can't be
+	 *         created, as it is created if needed, not to be called from the render thread
+	 */
+	public IFloatMatrix getRawMatrix() {
+		return snapshots.getRaw(getDataDomain().getTable());
+	}
+
+	/**
+	 * small tables are read directly, large ones through the shared memory mapped snapshot once it is available
+	 */
+	@Override
+	protected IFloatMatrix getNormalizedMatrix() {
+		return snapshots.peekNormalized(getDataDomain().getTable());
 	}
 
 	@Override
@@ -97,26 +136,53 @@ public class Numerical2DDataDomainValues extends ADataDomainDataValues {
 		return Constants.colorMapping(vs);
 	}
 
+	@Override
+	protected RGBATiles.ICells getCellColors() {
+		if (!MyPreferences.isUseNumericalColorMapping())
+			return super.getCellColors();
+		final ColorLookupTable table = ColorLookupTable.get();
+		final IFloatMatrix m = getNormalizedMatrix();
+		return new RGBATiles.ICells() {
+			@Override
+			public int rgba(int recordID, int dimensionID) {
+				if (recordID < 0 || dimensionID < 0)
+					return table.applyRGBA(Float.NaN);
+				return table.applyRGBA(m != null ? m.get(recordID, dimensionID) : getNormalized(dimensionID, recordID));
+			}
+		};
+	}
+
 	/**
-	 * @param t2
-	 * @return
+	 * splits the dimensions and records having invalid values into their own group
+	 *
+	 * @return the dimension and the record groups
 	 */
-	private Pair<TypedGroupSet, TypedGroupSet> extractGroups(TablePerspective t) {
-		Set<Integer> invalidDim = new BitSetSet();
-		Set<Integer> invalidRec = new BitSetSet();
-		TypedSet d = TypedSet.of(t.getDimensionPerspective().getVirtualArray());
-		TypedSet r = TypedSet.of(t.getRecordPerspective().getVirtualArray());
-		for (Integer dim : d) {
-			for(Integer rec : r) {
-				float v = getNormalized(dim, rec);
-				if (Float.isInfinite(v) || Float.isNaN(v)) {
-					invalidRec.add(rec);
-					invalidDim.add(dim);
+	private Pair<TypedGroupSet, TypedGroupSet> extractGroups(TypedSet d, TypedSet r) {
+		BitSetSet[] invalid = InvalidScanner.scan(TypedCollections.toArray(r), TypedCollections.toArray(d), getInvalidCells());
+		return Pair.make(resolve(invalid[1], d), resolve(invalid[0], r));
+	}
+
+	/**
+	 * @return the cells to scan for invalid values, rows = records, columns = dimensions, the normalized and the raw
+	 *         values are invalid at the same cells, so the primitive raw snapshot can be used if there is no
+	 *         normalized one, just already available snapshots are used, as it is called from the ui thread
+	 */
+	private InvalidScanner.ICells getInvalidCells() {
+		IFloatMatrix n = getNormalizedMatrix();
+		final IFloatMatrix m = n != null ? n : snapshots.peekRaw(getDataDomain().getTable());
+		if (m != null)
+			return new InvalidScanner.ICells() {
+				@Override
+				public float get(int recordID, int dimensionID) {
+					return m.get(recordID, dimensionID);
 				}
+			};
+		return new InvalidScanner.ICells() {
+			@Override
+			public float get(int recordID, int dimensionID) {
+				return getNormalized(dimensionID, recordID);
 			}
-		}
-
-		return Pair.make(resolve(invalidDim, d), resolve(invalidRec, r));
+		};
 	}
 
 	private TypedGroupSet resolve(Set<Integer> invalid, TypedSet d) {
@@ -5,11 +5,14 @@
  *******************************************************************************/
 package org.caleydo.view.domino.internal.data;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.id.IDType;
-import org.caleydo.core.util.collection.Pair;
 import org.caleydo.core.util.color.Color;
 import org.caleydo.core.util.function.DoubleFunctions;
 import org.caleydo.core.util.function.DoubleStatistics;
@@ -19,11 +22,13 @@ import org.caleydo.view.domino.api.model.typed.ITypedCollection;
 import org.caleydo.view.domino.api.model.typed.TypedCollections;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
 import org.caleydo.view.domino.internal.Constants;
+import org.caleydo.view.domino.internal.data.AsyncDataValues.IMonitor;
+import org.caleydo.view.domino.internal.util.QuantileSketch;
 
 import com.google.common.base.Function;
 import com.google.common.primitives.Floats;
-import com.jogamp.common.util.IntObjectHashMap;
 
 /**
  * @author Samuel Gratzl
@@ -33,45 +38,187 @@ public class ProjectedDataValues implements IDataValues, INumerical1DContainer,F
 	private final Numerical2DDataDomainValues wrappee;
 	private final EDimension along;
 	private final EProjection proj;
-	private final IntObjectHashMap data;
+	/**
+	 * id to position in {@link #values}, -1 if not projected
+	 */
+	private final int[] index;
+	/**
+	 * the projected value of each row in the order of the default groups
+	 */
+	private final float[] values;
 	private final Numerical1DMixin mixin;
 	private final TypedGroupSet singleGroup = TypedGroupSet.createUngrouped(TypedCollections.INVALID_SINGLETON_SET);
 	private final IInvertableDoubleFunction normalize;
 
 	public ProjectedDataValues(Numerical2DDataDomainValues wrappee, EProjection proj, EDimension along,
 			ITypedCollection other) {
+		this(wrappee, proj, along, other, AsyncDataValues.NO_MONITOR);
+	}
+
+	/**
+	 * @param monitor
+	 *            reports the projected rows
+	 * @throws CancellationException
+	 *             if the monitor was canceled
+	 */
+	public ProjectedDataValues(Numerical2DDataDomainValues wrappee, EProjection proj, EDimension along,
+			ITypedCollection other, IMonitor monitor) {
 		assert wrappee.getIDType(along) == other.getIdType();
 		this.wrappee = wrappee;
 		this.along = along;
 		this.proj = proj;
 		TypedGroupSet rows = wrappee.getDefaultGroups(along.opposite());
-		Pair<IntObjectHashMap, DoubleStatistics> r = project(rows, wrappee, along, proj, other);
-		this.data = r.getFirst();
-		DoubleStatistics stats = r.getSecond();
-		this.normalize = DoubleFunctions.normalize(stats.getMin(), stats.getMax());
-		this.mixin = new Numerical1DMixin(this, getDefaultGroups(along.opposite()), (float) r.getSecond().getMin(),
-				(float) r.getSecond().getMax());
-
-	}
-
-	private static Pair<IntObjectHashMap, DoubleStatistics> project(TypedGroupSet rows,
-			Numerical2DDataDomainValues wrappee, EDimension along, EProjection proj, Iterable<Integer> ids) {
-		DoubleStatistics.Builder b = DoubleStatistics.builder();
-		IntObjectHashMap r = new IntObjectHashMap(rows.size());
-		for (Integer id : rows) {
-			DoubleStatistics.Builder idb = DoubleStatistics.builder();
-			if (along.isDimension()) {
-				for (Integer col : ids)
-					idb.add(wrappee.getRaw(col, id));
-			} else {
-				for (Integer row : ids)
-					idb.add(wrappee.getRaw(id, row));
+		final int[] rowIds = TypedCollections.toArray(rows);
+		final int[] otherIds = TypedCollections.toArray(other);
+		this.index = toIndex(rowIds);
+		this.values = new float[rowIds.length];
+		ProjectTask task = new ProjectTask(new Projection(wrappee, along, proj, rowIds, otherIds, values,
+				monitor), 0,
+				rowIds.length);
+		if (Parallel.isWorthIt((long) rowIds.length * otherIds.length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+		this.normalize = DoubleFunctions.normalize(task.min, task.max);
+		this.mixin = new Numerical1DMixin(this, getDefaultGroups(along.opposite()), task.min, task.max);
+	}
+
+	/**
+	 * @return the projected data values, which are computed in the background
+	 */
+	public static AsyncDataValues async(final Numerical2DDataDomainValues wrappee, final EProjection proj,
+			final EDimension along, final ITypedCollection other) {
+		TypedGroupSet singleGroup = TypedGroupSet.createUngrouped(TypedCollections.INVALID_SINGLETON_SET);
+		TypedGroupSet rows = wrappee.getDefaultGroups(along.opposite());
+		return new AsyncDataValues(label(wrappee, proj, along), wrappee.getColor(), along.select(singleGroup, rows),
+				along.select(rows, singleGroup), new AsyncDataValues.ILoader() {
+					@Override
+					public IDataValues load(IMonitor monitor) {
+						return new ProjectedDataValues(wrappee, proj, along, other, monitor);
+					}
+				});
+	}
+
+	private static int[] toIndex(int[] ids) {
+		int max = -1;
+		for (int id : ids)
+			max = Math.max(max, id);
+		int[] r = new int[max + 1];
+		Arrays.fill(r, -1);
+		for (int i = 0; i < ids.length; ++i)
+			if (ids[i] >= 0)
+				r[ids[i]] = i;
+		return r;
+	}
+
+	/**
+	 * the shared input and output of the {@link ProjectTask}s
+	 */
+	private static final class Projection {
+		private final Numerical2DDataDomainValues wrappee;
+		private final IFloatMatrix matrix;
+		private final EDimension along;
+		private final EProjection proj;
+		private final int[] rows;
+		private final int[] others;
+		private final float[] values;
+		private final IMonitor monitor;
+		/**
+		 * the number of projected rows of all tasks
+		 */
+		private final AtomicInteger done = new AtomicInteger();
+
+		Projection(Numerical2DDataDomainValues wrappee, EDimension along, EProjection proj, int[] rows,
+				int[] others, float[] values, IMonitor monitor) {
+			this.wrappee = wrappee;
+			this.matrix = wrappee.getRawMatrix();
+			this.along = along;
+			this.proj = proj;
+			this.rows = rows;
+			this.others = others;
+			this.values = values;
+			this.monitor = monitor;
+		}
+
+		private float get(int row, int other) {
+			final int dimensionID = along.select(other, row);
+			final int recordID = along.select(row, other);
+			if (dimensionID < 0 || recordID < 0)
+				return Float.NaN;
+			if (matrix != null)
+				return matrix.get(recordID, dimensionID);
+			return wrappee.getRawValue(dimensionID, recordID);
+		}
+
+		/**
+		 * projects the rows of the given range using accumulators, which are not thread safe
+		 */
+		void project(int from, int to, QuantileSketch sketch) {
+			for (int i = from; i < to; ++i) {
+				if (monitor.isCanceled())
+					throw new CancellationException();
+				final int row = rows[i];
+				if (sketch != null) {
+					sketch.clear();
+					for (int other : others)
+						sketch.add(get(row, other));
+					values[i] = (float) proj.select(sketch);
+				} else {
+					DoubleStatistics.Builder b = DoubleStatistics.builder();
+					for (int other : others)
+						b.add(get(row, other));
+					values[i] = (float) proj.select(b.build());
+				}
+			}
+			monitor.setProgress(done.addAndGet(to - from) / (float) rows.length);
+		}
+	}
+
+	/**
+	 * row parallel projection, which merges the value range of its parts
+	 */
+	private static final class ProjectTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * minimal number of cells per task
+		 */
+		private static final int LEAF_CELLS = 1 << 16;
+		private final Projection projection;
+		private final int from;
+		private final int to;
+		private float min = Float.NaN;
+		private float max = Float.NaN;
+
+		ProjectTask(Projection projection, int from, int to) {
+			this.projection = projection;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || (long) (to - from) * projection.others.length <= LEAF_CELLS || !inForkJoinPool()) {
+				// streaming, bounded memory quantiles, reused for all rows of this task
+				QuantileSketch sketch = projection.proj.isQuantile() ? new QuantileSketch() : null;
+				projection.project(from, to, sketch);
+				for (int i = from; i < to; ++i)
+					merge(projection.values[i], projection.values[i]);
+				return;
 			}
-			float v = (float) proj.select(idb.build());
-			r.put(id, v);
-			b.add(v);
+			final int mid = (from + to) >>> 1;
+			ProjectTask left = new ProjectTask(projection, from, mid);
+			ProjectTask right = new ProjectTask(projection, mid, to);
+			invokeAll(left, right);
+			merge(left.min, left.max);
+			merge(right.min, right.max);
+		}
+
+		private void merge(float vmin, float vmax) {
+			if (!Float.isNaN(vmin) && (Float.isNaN(min) || vmin < min))
+				min = vmin;
+			if (!Float.isNaN(vmax) && (Float.isNaN(max) || vmax > max))
+				max = vmax;
 		}
-		return Pair.make(r, b.build());
 	}
 
 	/**
@@ -95,6 +242,10 @@ public class ProjectedDataValues implements IDataValues, INumerical1DContainer,F
 
 	@Override
 	public String getLabel() {
+		return label(wrappee, proj, along);
+	}
+
+	private static String label(Numerical2DDataDomainValues wrappee, EProjection proj, EDimension along) {
 		return String.format("%s %s projected along %s", wrappee.getLabel(), proj.getLabel(), along.name());
 	}
 
@@ -112,6 +263,16 @@ public class ProjectedDataValues implements IDataValues, INumerical1DContainer,F
 		return Floats.compare(getNormalized(a), getNormalized(b));
 	}
 
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		double[] r = new double[size];
+		if (dim == this.along)
+			return r;
+		for (int i = 0; i < size; ++i)
+			r[i] = getNormalized(ids[i]);
+		return r;
+	}
+
 	@Override
 	public String getExtensionID() {
 		return "numerical.1projected";
@@ -148,6 +309,11 @@ public class ProjectedDataValues implements IDataValues, INumerical1DContainer,F
 		return !"labels".equals(input) && !"distribution.bar".equals(input) && !"distribution.pie".equals(input);
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		return false;
+	}
+
 	@Override
 	public void onSelectionChanged(boolean selected) {
 		wrappee.onSelectionChanged(selected);
@@ -155,10 +321,9 @@ public class ProjectedDataValues implements IDataValues, INumerical1DContainer,F
 
 	@Override
 	public Float getRaw(int id) {
-		Float d = (Float) this.data.get(id);
-		if (d == null)
+		if (id < 0 || id >= index.length || index[id] < 0)
 			return Float.NaN;
-		return d;
+		return values[index[id]];
 	}
 
 	@Override
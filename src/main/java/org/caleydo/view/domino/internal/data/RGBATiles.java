@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import org.caleydo.core.util.color.Color;
+import org.caleydo.core.util.function.Function2;
+import org.caleydo.view.domino.api.model.typed.TypedCollections;
+import org.caleydo.view.domino.api.model.typed.TypedList;
+import org.caleydo.view.domino.api.model.typed.util.IntIntMap;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
+import org.caleydo.view.domino.internal.util.ColorLookupTable;
+
+/**
+ * bulk generation of the packed RGBA colors of the cells of a matrix, see
+ * {@link IDataValues#fillRGBA(TypedList, TypedList, int[])}.
+ *
+ * The cells are stored row by row, one row per record of the given list and one column per dimension. The colors are
+ * computed in {@link #TILE}x{@link #TILE} tiles, which are distributed among the shared pool. The heatmap reads them
+ * through {@link #colors(IDataValues, TypedList, TypedList, Function2)}.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class RGBATiles {
+	public static final int TILE = 64;
+	/**
+	 * maximal number of cells of a matrix, as its colors are stored in a single array, larger matrices use the per cell
+	 * fallback, see {@link FloatMatrix#MAX_CELLS}
+	 */
+	public static final long MAX_CELLS = FloatMatrix.MAX_CELLS;
+
+	private RGBATiles() {
+
+	}
+
+	/**
+	 * color source of the cells
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	public interface ICells {
+		/**
+		 * @return the color of the given cell packed as RGBA, see {@link ColorLookupTable#pack}
+		 */
+		int rgba(int recordID, int dimensionID);
+	}
+
+	/**
+	 * @return whether the colors of a matrix of the given size fit into a single array, see {@link #MAX_CELLS}
+	 */
+	public static boolean canFill(int dimensions, int records) {
+		return (long) dimensions * records <= MAX_CELLS;
+	}
+
+	/**
+	 * fills the colors of the given cells
+	 *
+	 * @param swapped
+	 *            whether the dimension list contains record ids and vice versa
+	 * @param target
+	 *            of at least dimData.size() * recData.size() entries
+	 * @throws IllegalArgumentException
+	 *             if the matrix is too large, see {@link #canFill(int, int)}
+	 */
+	public static void fill(TypedList dimData, TypedList recData, boolean swapped, ICells cells, int[] target) {
+		fill(TypedCollections.toArray(recData), TypedCollections.toArray(dimData), swapped, cells, target);
+	}
+
+	/**
+	 * fills the colors of the cells of the given row and column ids
+	 */
+	static void fill(int[] rows, int[] columns, boolean swapped, ICells cells, int[] target) {
+		if (!canFill(columns.length, rows.length))
+			throw new IllegalArgumentException("too many cells: " + rows.length + "x" + columns.length);
+		if (target.length < columns.length * rows.length)
+			throw new IllegalArgumentException("target too small: " + target.length);
+		FillTask task = new FillTask(rows, columns, swapped, cells, target, 0, tiles(rows.length)
+				* tiles(columns.length));
+		if (Parallel.isWorthIt((long) rows.length * columns.length))
+			Parallel.pool().invoke(task);
+		else
+			task.compute();
+	}
+
+	private static int tiles(int n) {
+		return (n + TILE - 1) / TILE;
+	}
+
+	/**
+	 * fills a range of tiles
+	 */
+	private static final class FillTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * the ids of the rows and columns of the target
+		 */
+		private final int[] rows;
+		private final int[] columns;
+		private final boolean swapped;
+		private final ICells cells;
+		private final int[] target;
+		private final int from;
+		private final int to;
+
+		FillTask(int[] rows, int[] columns, boolean swapped, ICells cells, int[] target, int from, int to) {
+			this.rows = rows;
+			this.columns = columns;
+			this.swapped = swapped;
+			this.cells = cells;
+			this.target = target;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1 || !inForkJoinPool()) {
+				for (int t = from; t < to; ++t)
+					fillTile(t);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new FillTask(rows, columns, swapped, cells, target, from, mid), new FillTask(rows, columns,
+					swapped, cells, target, mid, to));
+		}
+
+		private void fillTile(int tile) {
+			final int tileColumns = tiles(columns.length);
+			final int r0 = (tile / tileColumns) * TILE, r1 = Math.min(rows.length, r0 + TILE);
+			final int c0 = (tile % tileColumns) * TILE, c1 = Math.min(columns.length, c0 + TILE);
+			for (int r = r0; r < r1; ++r) {
+				final int offset = r * columns.length;
+				for (int c = c0; c < c1; ++c) {
+					final int recordID = swapped ? columns[c] : rows[r];
+					final int dimensionID = swapped ? rows[r] : columns[c];
+					target[offset + c] = cells.rgba(recordID, dimensionID);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param data
+	 *            the data values, which fill the colors, see {@link IDataValues#fillRGBA(TypedList, TypedList, int[])}
+	 * @param fallback
+	 *            the cell colors used if the data values can't fill the colors or the ids are not part of the lists
+	 * @return the cell colors of the given lists, as consumed by the heatmap, see {@link CellColors}
+	 */
+	public static Function2<Integer, Integer, Color> colors(IDataValues data, TypedList dimData, TypedList recData,
+			Function2<Integer, Integer, Color> fallback) {
+		return new CellColors(data, dimData, recData, fallback);
+	}
+
+	/**
+	 * the cell colors of a {@link IDataValues} as (record, dimension) to color function, backed by its tile, which is
+	 * filled at the first lookup and valid as long as neither the lists, i.e. the sort order, nor the color
+	 * preferences changed. As it is created per visualization of the lists, the tile is cached per node and sort
+	 * order. The colors are shared instances, which must not be modified.
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class CellColors implements Function2<Integer, Integer, Color> {
+		private final IDataValues data;
+		private final TypedList dimData;
+		private final TypedList recData;
+		private final Function2<Integer, Integer, Color> fallback;
+
+		private volatile Tile tile;
+
+		CellColors(IDataValues data, TypedList dimData, TypedList recData, Function2<Integer, Integer, Color> fallback) {
+			this.data = data;
+			this.dimData = dimData;
+			this.recData = recData;
+			this.fallback = fallback;
+		}
+
+		@Override
+		public Color apply(Integer recordID, Integer dimensionID) {
+			final Tile t = getTile();
+			if (t.palette != null && recordID != null && dimensionID != null) {
+				final int r = t.rows.get(recordID.intValue(), -1);
+				final int c = t.columns.get(dimensionID.intValue(), -1);
+				if (r >= 0 && c >= 0)
+					return t.palette[t.cells[r * t.columns.size() + c]];
+			}
+			return fallback.apply(recordID, dimensionID);
+		}
+
+		private Tile getTile() {
+			final int version = ColorLookupTable.get().getVersion();
+			Tile t = tile;
+			if (t != null && t.version == version)
+				return t;
+			synchronized (this) {
+				t = tile;
+				if (t == null || t.version != version)
+					tile = t = createTile(version);
+				return t;
+			}
+		}
+
+		private Tile createTile(int version) {
+			final int[] columns = TypedCollections.toArray(dimData);
+			final int[] rows = TypedCollections.toArray(recData);
+			final IntIntMap rowIndex = toIndex(rows);
+			final IntIntMap columnIndex = toIndex(columns);
+			// a list with duplicates can't be looked up by id
+			if (!canFill(columns.length, rows.length) || rowIndex.size() < rows.length
+					|| columnIndex.size() < columns.length)
+				return new Tile(version, null, null, null, null);
+			int[] cells = new int[columns.length * rows.length];
+			if (!data.fillRGBA(dimData, recData, cells))
+				return new Tile(version, null, null, null, null);
+			// replace the packed colors by the index of their shared color
+			IntIntMap lookup = new IntIntMap();
+			List<Color> palette = new ArrayList<>();
+			for (int i = 0; i < cells.length; ++i) {
+				int index = lookup.get(cells[i], -1);
+				if (index < 0) {
+					index = palette.size();
+					lookup.put(cells[i], index);
+					palette.add(ColorLookupTable.unpack(cells[i]));
+				}
+				cells[i] = index;
+			}
+			return new Tile(version, rowIndex, columnIndex, cells, palette.toArray(new Color[0]));
+		}
+
+		private static IntIntMap toIndex(int[] ids) {
+			IntIntMap r = new IntIntMap(ids.length);
+			for (int i = 0; i < ids.length; ++i)
+				r.put(ids[i], i);
+			return r;
+		}
+	}
+
+	/**
+	 * immutable colors of the cells of a version of the color preferences
+	 */
+	private static final class Tile {
+		private final int version;
+		/**
+		 * id to row / column index or null if not supported
+		 */
+		private final IntIntMap rows;
+		private final IntIntMap columns;
+		/**
+		 * the palette index of each cell, row by row
+		 */
+		private final int[] cells;
+		private final Color[] palette;
+
+		Tile(int version, IntIntMap rows, IntIntMap columns, int[] cells, Color[] palette) {
+			this.version = version;
+			this.rows = rows;
+			this.columns = columns;
+			this.cells = cells;
+			this.palette = palette;
+		}
+	}
+}
@@ -158,21 +158,12 @@ public class StratificationDataValue implements IDataValues, Function<Integer, C
 
 	@Override
 	public Color apply(Integer id) {
-		for (TypedSetGroup g : groups()) {
-			if (g.contains(id))
-				return g.getColor();
-		}
-		return Color.NOT_A_NUMBER_COLOR;
+		TypedSetGroup g = id == null ? null : groups.groupOf(id.intValue());
+		return g == null ? Color.NOT_A_NUMBER_COLOR : g.getColor();
 	}
 
 	public int indexOf(Integer id) {
-		int i = 0;
-		for (TypedSetGroup g : groups()) {
-			if (g.contains(id))
-				return i;
-			i++;
-		}
-		return -1;
+		return id == null ? -1 : groups.groupIndexOf(id.intValue());
 	}
 
 	@Override
@@ -190,6 +181,14 @@ public class StratificationDataValue implements IDataValues, Function<Integer, C
 		return indexOf(a) - indexOf(b);
 	}
 
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		double[] r = new double[size];
+		for (int i = 0; i < size; ++i)
+			r[i] = indexOf(ids[i]);
+		return r;
+	}
+
 	@Override
 	public Collection<String> getDefaultVisualization() {
 		return Arrays.asList("sheatmap", "distribution.hist");
@@ -205,6 +204,11 @@ public class StratificationDataValue implements IDataValues, Function<Integer, C
 		return !Arrays.asList("labels", "distribution.bar", "hbar", "kaplanmeier", "boxandwhiskers").contains(input);
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		return false;
+	}
+
 	@Override
 	public void onSelectionChanged(boolean selected) {
 		if (selected && reference != null)
@@ -5,6 +5,7 @@
  *******************************************************************************/
 package org.caleydo.view.domino.internal.data;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Objects;
@@ -19,6 +20,7 @@ import org.caleydo.view.domino.api.model.typed.ITypedCollection;
 import org.caleydo.view.domino.api.model.typed.TypedGroupSet;
 import org.caleydo.view.domino.api.model.typed.TypedList;
 import org.caleydo.view.domino.api.model.typed.TypedSet;
+import org.caleydo.view.domino.internal.util.IndexedSort;
 
 import com.google.common.base.Function;
 
@@ -96,6 +98,16 @@ public class String1DDataDomainValues extends A1DDataDomainValues {
 		return Objects.compare(getRaw(a), getRaw(b), String.CASE_INSENSITIVE_ORDER);
 	}
 
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		if (dim != main)
+			return new double[size];
+		String[] raw = new String[size];
+		for (int i = 0; i < size; ++i)
+			raw[i] = getRaw(ids[i]);
+		return IndexedSort.denseRanks(Arrays.asList(raw), String.CASE_INSENSITIVE_ORDER);
+	}
+
 	@Override
 	public String getRaw(int id) {
 		Object r = super.getRaw(id);
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.caleydo.core.data.collection.table.Table;
+import org.caleydo.core.data.datadomain.ATableBasedDataDomain;
+import org.caleydo.core.io.DataSetDescription;
+import org.caleydo.core.manager.GeneralManager;
+import org.caleydo.core.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * the primitive snapshots of a numerical {@link Table}, shared by all data values, copies and transposes of a data
+ * domain.
+ *
+ * The snapshots are created in the background by the loader of {@link AsyncDataValues}, such that the render thread
+ * never blocks on them but reads the table until they are available. Small tables are copied to the heap, large ones
+ * to memory mapped cache files. If a cache file can't be created, e.g. as the disk is full, the table is read
+ * directly and the creation is retried later on.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class TableSnapshots {
+	/**
+	 * directory of the memory mapped snapshots of tables, which are too large for the heap
+	 */
+	private static final File CACHE_DIR = new File(GeneralManager.CALEYDO_HOME_PATH, "domino_cache");
+	/**
+	 * delay after a failed creation before trying again
+	 */
+	private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+	private static final Logger log = Logger.create(TableSnapshots.class);
+
+	/**
+	 * weak, as the table is referenced by its data domain as long as it exists
+	 */
+	private static final Cache<Table, TableSnapshots> INSTANCES = CacheBuilder.newBuilder().weakKeys().build();
+
+	/**
+	 * prefix of the cache files
+	 */
+	private final String name;
+	/**
+	 * fingerprint of the source of the table to validate cache files of previous sessions, see
+	 * {@link #identity(ATableBasedDataDomain)}
+	 */
+	private final long identity;
+	private final int records;
+	private final int dims;
+
+	/**
+	 * snapshot of the raw values, rows = records, columns = dimensions
+	 */
+	private final Snapshot raw = new Snapshot("raw") {
+		@Override
+		IFloatMatrix create(final Table table) throws IOException {
+			if ((long) dims * records > FloatMatrix.MAX_CELLS)
+				return map("raw", new MappedFloatMatrix.ISource() {
+					@Override
+					public float get(int row, int column) {
+						return toFloat(table.getRaw(column, row));
+					}
+				});
+			float[] r = new float[dims * records];
+			// row by row to write sequentially
+			for (int rec = 0; rec < records; ++rec) {
+				final Integer recordID = Integer.valueOf(rec);
+				final int offset = rec * dims;
+				for (int dim = 0; dim < dims; ++dim)
+					r[offset + dim] = toFloat(table.getRaw(Integer.valueOf(dim), recordID));
+			}
+			return new FloatMatrix(records, dims, r);
+		}
+	};
+
+	/**
+	 * memory mapped snapshot of the normalized values of large tables, small tables are read directly
+	 */
+	private final Snapshot normalized = new Snapshot("normalized") {
+		@Override
+		IFloatMatrix create(final Table table) throws IOException {
+			if ((long) dims * records <= FloatMatrix.MAX_CELLS)
+				return null;
+			return map("normalized", new MappedFloatMatrix.ISource() {
+				@Override
+				public float get(int row, int column) {
+					return table.getNormalizedValue(column, row);
+				}
+			});
+		}
+	};
+
+	private TableSnapshots(String name, long identity, Table table) {
+		this.name = name;
+		this.identity = identity;
+		this.dims = table.size();
+		this.records = table.depth();
+	}
+
+	/**
+	 * @return the shared snapshots of the table of the given data domain
+	 */
+	static TableSnapshots of(final ATableBasedDataDomain dataDomain) {
+		final Table table = dataDomain.getTable();
+		try {
+			return INSTANCES.get(table, new Callable<TableSnapshots>() {
+				@Override
+				public TableSnapshots call() {
+					return new TableSnapshots(dataDomain.getDataDomainID().replaceAll("[^\\w.-]", "_"),
+							identity(dataDomain), table);
+				}
+			});
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return a cheap fingerprint of the data domain and the file it was loaded from, i.e. its path, size and
+	 *         modification time
+	 */
+	private static long identity(ATableBasedDataDomain dataDomain) {
+		long h = dataDomain.getDataDomainID().hashCode();
+		DataSetDescription desc = dataDomain.getDataSetDescription();
+		String path = desc == null ? null : desc.getDataSourcePath();
+		if (path != null) {
+			File f = new File(path);
+			h = h * 31 + path.hashCode();
+			h = h * 31 + f.length();
+			h = h * 31 + f.lastModified();
+		}
+		return h;
+	}
+
+	/**
+	 * @return the snapshot of the raw values if available, otherwise its creation is started in the background and
+	 *         null is returned
+	 */
+	IFloatMatrix peekRaw(Table table) {
+		return raw.peek(table);
+	}
+
+	/**
+	 * @return the snapshot of the raw values, created if needed, thus not to be called from the render thread, or
+	 *         null if it can't be created
+	 */
+	IFloatMatrix getRaw(Table table) {
+		return raw.get(table);
+	}
+
+	/**
+	 * @return the snapshot of the normalized values if available, otherwise its creation is started in the
+	 *         background and null is returned
+	 */
+	IFloatMatrix peekNormalized(Table table) {
+		return normalized.peek(table);
+	}
+
+	/**
+	 * @return the memory mapped snapshot reusing the cache file of a previous session if possible, or null if the
+	 *         table can't be mapped at all
+	 */
+	private IFloatMatrix map(String kind, MappedFloatMatrix.ISource source) throws IOException {
+		if (!MappedFloatMatrix.canMap(dims))
+			return null;
+		String file = name + "_" + kind + "_" + records + "x" + dims + ".bin";
+		return MappedFloatMatrix.open(new File(CACHE_DIR, file), records, dims, identity, source);
+	}
+
+	static float toFloat(Object r) {
+		if (r instanceof Float)
+			return ((Float) r).floatValue();
+		if (r instanceof Integer) {
+			int i = ((Integer) r).intValue();
+			if (i == Integer.MIN_VALUE) // invalid marker
+				return Float.NaN;
+			return i;
+		}
+		if (r instanceof Number)
+			return ((Number) r).floatValue();
+		return Float.NaN;
+	}
+
+	/**
+	 * a lazily created snapshot
+	 */
+	private abstract class Snapshot {
+		private final String kind;
+		/**
+		 * serializes the creation, separate from this, such that {@link #peek(Table)} never waits for it
+		 */
+		private final Object creation = new Object();
+		private volatile IFloatMatrix matrix;
+		/**
+		 * whether there is no snapshot for this table, e.g. as it is small enough to be read directly, guarded by this
+		 */
+		private boolean missing = false;
+		/**
+		 * whether the creation was started in the background, guarded by this
+		 */
+		private boolean scheduled = false;
+		/**
+		 * time of the next try after a failed creation, guarded by this
+		 */
+		private long retryAt = 0;
+
+		Snapshot(String kind) {
+			this.kind = kind;
+		}
+
+		IFloatMatrix peek(final Table table) {
+			IFloatMatrix m = matrix;
+			if (m != null)
+				return m;
+			synchronized (this) {
+				if (matrix != null || missing || scheduled || System.currentTimeMillis() < retryAt)
+					return matrix;
+				scheduled = true;
+			}
+			AsyncDataValues.execute(new Runnable() {
+				@Override
+				public void run() {
+					get(table);
+				}
+			});
+			return null;
+		}
+
+		IFloatMatrix get(Table table) {
+			synchronized (creation) {
+				synchronized (this) {
+					if (matrix != null || missing || System.currentTimeMillis() < retryAt)
+						return matrix;
+				}
+				IFloatMatrix m = null;
+				boolean failed = true;
+				try {
+					m = create(table);
+					failed = false;
+				} catch (IOException | RuntimeException e) {
+					log.error("can't create the " + kind + " snapshot of " + name + ", retrying later", e);
+				} finally {
+					synchronized (this) {
+						if (failed)
+							retryAt = System.currentTimeMillis() + RETRY_DELAY;
+						else {
+							matrix = m;
+							missing = m == null;
+						}
+						scheduled = false;
+					}
+				}
+				return m;
+			}
+		}
+
+		/**
+		 * @return the new snapshot or null if there is none for this table
+		 * @throws IOException
+		 *             if the creation failed and should be retried later on
+		 */
+		abstract IFloatMatrix create(Table table) throws IOException;
+	}
+}
@@ -46,6 +46,11 @@ public class TransposedDataValues implements IDataValues {
 		return wrappee.compare(dim.opposite(), a, b, otherData);
 	}
 
+	@Override
+	public double[] getSortKeys(EDimension dim, int[] ids, int size, ITypedCollection otherData) {
+		return wrappee.getSortKeys(dim.opposite(), ids, size, otherData);
+	}
+
 	@Override
 	public String getExtensionID() {
 		return wrappee.getExtensionID();
@@ -56,6 +61,11 @@ public class TransposedDataValues implements IDataValues {
 		wrappee.fill(b, dimData, recData, existNeigbhor, mediumTranspose);
 	}
 
+	@Override
+	public boolean fillRGBA(TypedList dimData, TypedList recData, int[] target) {
+		return wrappee.fillRGBA(dimData, recData, target);
+	}
+
 	@Override
 	public Collection<String> getDefaultVisualization() {
 		return wrappee.getDefaultVisualization();
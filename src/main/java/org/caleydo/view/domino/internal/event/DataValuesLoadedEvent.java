@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.event;
+
+import org.caleydo.core.event.ADirectedEvent;
+import org.caleydo.view.domino.internal.data.AsyncDataValues;
+import org.caleydo.view.domino.internal.data.IDataValues;
+
+/**
+ * notifies a node in its thread that its {@link AsyncDataValues} are loaded
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public class DataValuesLoadedEvent extends ADirectedEvent {
+	private final AsyncDataValues values;
+	private final IDataValues loaded;
+
+	public DataValuesLoadedEvent(AsyncDataValues values, IDataValues loaded) {
+		this.values = values;
+		this.loaded = loaded;
+	}
+
+	/**
+	 * @return the values, see {@link #values}
+	 */
+	public AsyncDataValues getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the loaded, see {@link #loaded}
+	 */
+	public IDataValues getLoaded() {
+		return loaded;
+	}
+}
@@ -15,15 +15,18 @@ public class Activator extends AbstractUIPlugin {
 	// The shared instance
 	private static Activator plugin;
 
+	private final MappingCacheInvalidator invalidator = new MappingCacheInvalidator();
 
 	@Override
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		invalidator.register();
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		invalidator.unregister();
 		plugin = null;
 		super.stop(context);
 	}
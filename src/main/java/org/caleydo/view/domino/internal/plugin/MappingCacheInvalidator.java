@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.plugin;
+
+import org.caleydo.core.data.datadomain.ATableBasedDataDomain;
+import org.caleydo.core.data.datadomain.IDataDomain;
+import org.caleydo.core.event.EventListenerManager;
+import org.caleydo.core.event.EventListenerManager.ListenTo;
+import org.caleydo.core.event.EventListenerManagers;
+import org.caleydo.core.event.data.DataDomainUpdateEvent;
+import org.caleydo.core.event.data.NewDataDomainLoadedEvent;
+import org.caleydo.view.domino.api.model.typed.MappingCaches;
+
+/**
+ * invalidates the shared {@link MappingCaches} whenever a data domain is added or updated, as it might bring new id
+ * mappings
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class MappingCacheInvalidator {
+	private final EventListenerManager listeners = EventListenerManagers.createSWTDirect();
+
+	void register() {
+		listeners.register(this);
+	}
+
+	void unregister() {
+		listeners.unregisterAll();
+	}
+
+	@ListenTo
+	private void onDataDomainLoaded(NewDataDomainLoadedEvent event) {
+		MappingCaches.invalidate();
+	}
+
+	@ListenTo
+	private void onDataDomainUpdated(DataDomainUpdateEvent event) {
+		IDataDomain d = event.getDataDomain();
+		if (!(d instanceof ATableBasedDataDomain)) {
+			MappingCaches.invalidate();
+			return;
+		}
+		ATableBasedDataDomain t = (ATableBasedDataDomain) d;
+		MappingCaches.invalidate(t.getRecordIDCategory());
+		MappingCaches.invalidate(t.getDimensionIDCategory());
+	}
+}
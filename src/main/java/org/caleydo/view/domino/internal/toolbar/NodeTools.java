@@ -5,21 +5,26 @@
  *******************************************************************************/
 package org.caleydo.view.domino.internal.toolbar;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.core.util.color.Color;
 import org.caleydo.core.view.opengl.layout2.GLElement;
 import org.caleydo.core.view.opengl.layout2.basic.GLButton;
 import org.caleydo.core.view.opengl.layout2.basic.GLButton.ISelectionCallback;
+import org.caleydo.core.view.opengl.layout2.basic.GLComboBox;
 import org.caleydo.core.view.opengl.layout2.geom.Rect;
 import org.caleydo.core.view.opengl.layout2.manage.ButtonBarBuilder;
 import org.caleydo.core.view.opengl.layout2.manage.ButtonBarBuilder.EButtonBarLayout;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactories.GLElementSupplier;
 import org.caleydo.core.view.opengl.layout2.manage.GLElementFactorySwitcher;
+import org.caleydo.core.view.opengl.layout2.renderer.GLRenderers;
 import org.caleydo.view.domino.api.model.EDirection;
 import org.caleydo.view.domino.internal.Block;
 import org.caleydo.view.domino.internal.Domino;
@@ -28,6 +33,8 @@ import org.caleydo.view.domino.internal.NodeGroup;
 import org.caleydo.view.domino.internal.NodeSelections;
 import org.caleydo.view.domino.internal.Resources;
 import org.caleydo.view.domino.internal.UndoStack;
+import org.caleydo.view.domino.internal.data.EProjection;
+import org.caleydo.view.domino.internal.data.IHasAggregation;
 import org.caleydo.view.domino.internal.data.INumerical1DContainer;
 import org.caleydo.view.domino.internal.data.Numerical2DDataDomainValues;
 import org.caleydo.view.domino.internal.ui.BinPopup;
@@ -40,6 +47,7 @@ import org.caleydo.view.domino.internal.undo.RemoveBlockCmd;
 import org.caleydo.view.domino.internal.undo.RemoveNodeCmd;
 import org.caleydo.view.domino.internal.undo.RemoveNodeGroupCmd;
 import org.caleydo.view.domino.internal.undo.RemoveSliceCmd;
+import org.caleydo.view.domino.internal.undo.SetAggregationCmd;
 import org.caleydo.view.domino.internal.undo.SortByNodesCmd;
 import org.caleydo.view.domino.internal.undo.TransposeBlocksCmd;
 import org.caleydo.view.domino.internal.undo.TransposeNodeViewCmd;
@@ -280,6 +288,9 @@ public class NodeTools extends AItemTools {
 			if (node.getUnderlyingData(EDimension.RECORD).getGroups().size() > 1)
 				addButton("Stratify Rec", Resources.ICON_STRATIFY_REC);
 		}
+		final IHasAggregation aggregating = node.getAggregatingDataValues();
+		if (aggregating != null && node.has(EDimension.DIMENSION) && node.has(EDimension.RECORD))
+			addAggregationSelector(node, aggregating);
 		final boolean recAlone = node.isAlone(EDimension.RECORD);
 		if (node.has(EDimension.DIMENSION) && !recAlone) {
 			addButton("Limit Dim", Resources.ICON_LIMIT_DATA_DIM);
@@ -304,6 +315,23 @@ public class NodeTools extends AItemTools {
 		addButton("Open Details", Resources.ICON_FOCUS);
 	}
 
+	/**
+	 * selector of the aggregation of multiple columns when sorting by the node
+	 */
+	private void addAggregationSelector(final Node node, IHasAggregation values) {
+		final List<EProjection> items = Arrays.asList(EProjection.values());
+		GLComboBox<EProjection> c = new GLComboBox<>(items, GLComboBox.DEFAULT, GLRenderers.fillRect(Color.WHITE));
+		c.setTooltip("Aggregation of multiple columns when sorting");
+		c.setSelected(items.indexOf(values.getAggregation()));
+		c.setCallback(new GLComboBox.ISelectionCallback<EProjection>() {
+			@Override
+			public void onSelectionChanged(GLComboBox<? extends EProjection> widget, EProjection item) {
+				undo.push(new SetAggregationCmd(node, item));
+			}
+		});
+		this.add(c.setSize(60, -1));
+	}
+
 	/**
 	 *
 	 */
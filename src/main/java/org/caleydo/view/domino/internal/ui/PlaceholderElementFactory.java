@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.ui;
+
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.core.util.color.Color;
+import org.caleydo.core.view.opengl.layout.Column.VAlign;
+import org.caleydo.core.view.opengl.layout2.GLElement;
+import org.caleydo.core.view.opengl.layout2.GLGraphics;
+import org.caleydo.core.view.opengl.layout2.manage.GLElementDimensionDesc;
+import org.caleydo.core.view.opengl.layout2.manage.GLElementFactoryContext;
+import org.caleydo.core.view.opengl.layout2.manage.IGLElementFactory2;
+import org.caleydo.view.domino.internal.data.AsyncDataValues;
+
+/**
+ * visualization of a {@link AsyncDataValues}, which is still loading or failed to load
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public class PlaceholderElementFactory implements IGLElementFactory2 {
+
+	@Override
+	public String getId() {
+		return AsyncDataValues.PLACEHOLDER;
+	}
+
+	@Override
+	public GLElement create(GLElementFactoryContext context) {
+		return new PlaceholderElement(context.get(AsyncDataValues.class, null));
+	}
+
+	@Override
+	public boolean apply(GLElementFactoryContext context) {
+		return context.get(AsyncDataValues.class, null) != null;
+	}
+
+	@Override
+	public GLElementDimensionDesc getDesc(EDimension dim, GLElement elem) {
+		return GLElementDimensionDesc.newFix(dim.select(200, 50)).build();
+	}
+
+	@Override
+	public GLElement createParameters(GLElement elem) {
+		return null;
+	}
+
+	private static final class PlaceholderElement extends GLElement {
+		private final AsyncDataValues data;
+
+		public PlaceholderElement(AsyncDataValues data) {
+			this.data = data;
+		}
+
+		@Override
+		protected void renderImpl(GLGraphics g, float w, float h) {
+			g.color(Color.WHITE).fillRect(0, 0, w, h);
+			float hi = Math.min(h - 6, 14);
+			final RuntimeException error = data.getError();
+			if (error != null) {
+				g.color(Color.RED).fillRect(0, h - 4, w, 4);
+				String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+				g.drawText("Loading failed: " + message, 0, (h - 4 - hi) * 0.5f, w, hi, VAlign.CENTER);
+				super.renderImpl(g, w, h);
+				return;
+			}
+			final float progress = data.getProgress();
+			g.color(Color.LIGHT_GRAY).fillRect(0, h - 4, w * progress, 4);
+			g.drawText(String.format("Loading %.0f%%", progress * 100), 0, (h - 4 - hi) * 0.5f, w, hi,
+					VAlign.CENTER);
+			super.renderImpl(g, w, h);
+			if (!data.isLoaded()) // poll the progress till loaded or failed
+				repaint();
+		}
+	}
+}
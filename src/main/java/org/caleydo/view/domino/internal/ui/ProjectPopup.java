@@ -86,9 +86,9 @@ public class ProjectPopup extends GLElementContainer {
 		assert isReady();
 		TypedList other = along.select(dim, rec);
 		if (useProj)
-			return new ProjectedDataValues(wrappee, proj, along, other);
+			return ProjectedDataValues.async(wrappee, proj, along, other);
 		else
-			return new CorrelatedDataValues(wrappee, correlation, along, other);
+			return CorrelatedDataValues.async(wrappee, correlation, along, other);
 	}
 
 	/**
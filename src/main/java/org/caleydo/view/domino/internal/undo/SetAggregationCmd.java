@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.undo;
+
+import org.caleydo.view.domino.internal.Domino;
+import org.caleydo.view.domino.internal.Node;
+import org.caleydo.view.domino.internal.data.EProjection;
+import org.caleydo.view.domino.internal.data.IHasAggregation;
+
+/**
+ * @author Samuel Gratzl
+ *
+ */
+public class SetAggregationCmd implements ICmd {
+	private final Node node;
+	private final EProjection aggregation;
+
+	public SetAggregationCmd(Node node, EProjection aggregation) {
+		this.node = node;
+		this.aggregation = aggregation;
+	}
+
+	@Override
+	public String getLabel() {
+		return "Set Sort Aggregation: " + aggregation.getLabel();
+	}
+
+	@Override
+	public ICmd run(Domino domino) {
+		IHasAggregation values = node.getAggregatingDataValues();
+		if (values == null)
+			return null;
+		EProjection bak = values.getAggregation();
+		node.setAggregation(aggregation);
+		return new SetAggregationCmd(node, bak);
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.util;
+
+import org.caleydo.core.util.color.Color;
+import org.caleydo.view.domino.internal.prefs.MyPreferences;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+/**
+ * quantized lookup table of the numerical color mapping between the min and max color of the preferences.
+ *
+ * The table is created once and recreated just if one of the colors changes, such that mapping a value neither
+ * queries the preference store nor allocates a new {@link Color}. The colors are available both as shared
+ * {@link Color} instances, which must not be modified, and as packed RGBA ints.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class ColorLookupTable {
+	public static final int SIZE = 1024;
+	private static final int NAN_RGBA = pack(Color.NOT_A_NUMBER_COLOR);
+
+	private static volatile ColorLookupTable current;
+	private static int versions = 0;
+	private static boolean listening = false;
+
+	private final int version;
+	private final Color[] colors = new Color[SIZE];
+	private final int[] rgba = new int[SIZE];
+
+	private ColorLookupTable(int version, Color min, Color max) {
+		this.version = version;
+		final float f = 1.f / (SIZE - 1);
+		for (int i = 0; i < SIZE; ++i) {
+			float a = i * f;
+			// v0*(1-t)+v1*t
+			float ma = 1 - a;
+			colors[i] = new Color(min.r * ma + max.r * a, min.g * ma + max.g * a, min.b * ma + max.b * a, min.a * ma
+					+ max.a * a);
+			rgba[i] = pack(colors[i]);
+		}
+	}
+
+	/**
+	 * @return the table of the current preferences
+	 */
+	public static ColorLookupTable get() {
+		ColorLookupTable t = current;
+		if (t != null)
+			return t;
+		synchronized (ColorLookupTable.class) {
+			if (current == null) {
+				if (!listening) {
+					MyPreferences.prefs().addPropertyChangeListener(new IPropertyChangeListener() {
+						@Override
+						public void propertyChange(PropertyChangeEvent event) {
+							final String p = event.getProperty();
+							if (p.startsWith("numerical.color.") || "matrix.color.usenumerical".equals(p))
+								invalidate();
+						}
+					});
+					listening = true;
+				}
+				current = new ColorLookupTable(++versions, MyPreferences.getNumericalMappingMinColor(),
+						MyPreferences.getNumericalMappingMaxColor());
+			}
+			return current;
+		}
+	}
+
+	private static synchronized void invalidate() {
+		current = null;
+	}
+
+	/**
+	 * @return the version of this table, which changes whenever the color preferences change
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	private static int index(float a) {
+		if (a <= 0)
+			return 0;
+		if (a >= 1)
+			return SIZE - 1;
+		return (int) (a * (SIZE - 1) + 0.5f);
+	}
+
+	/**
+	 * @param a
+	 *            normalized value in [0,1], clamped otherwise
+	 * @return the shared color, which must not be modified, {@link Color#NOT_A_NUMBER_COLOR} for {@link Float#NaN}
+	 */
+	public Color apply(float a) {
+		if (Float.isNaN(a))
+			return Color.NOT_A_NUMBER_COLOR;
+		return colors[index(a)];
+	}
+
+	/**
+	 * @param a
+	 *            normalized value in [0,1], clamped otherwise
+	 * @return the color packed as RGBA, see {@link #pack(Color)}
+	 */
+	public int applyRGBA(float a) {
+		if (Float.isNaN(a))
+			return NAN_RGBA;
+		return rgba[index(a)];
+	}
+
+	/**
+	 * @return the given color packed as 0xRRGGBBAA
+	 */
+	public static int pack(Color c) {
+		return (toByte(c.r) << 24) | (toByte(c.g) << 16) | (toByte(c.b) << 8) | toByte(c.a);
+	}
+
+	/**
+	 * @return the color of the given packed 0xRRGGBBAA, see {@link #pack(Color)}
+	 */
+	public static Color unpack(int rgba) {
+		return new Color((rgba >>> 24) / 255f, ((rgba >>> 16) & 0xFF) / 255f, ((rgba >>> 8) & 0xFF) / 255f,
+				(rgba & 0xFF) / 255f);
+	}
+
+	private static int toByte(float v) {
+		return Math.max(0, Math.min(255, Math.round(v * 255)));
+	}
+
+	@Override
+	public String toString() {
+		return "ColorLookupTable [version=" + version + "]";
+	}
+}
@@ -5,45 +5,174 @@
  *******************************************************************************/
 package org.caleydo.view.domino.internal.util;
 
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import org.caleydo.view.domino.api.model.typed.util.IndexSorter;
+import org.caleydo.view.domino.api.model.typed.util.Parallel;
+
 import com.google.common.collect.Ordering;
-import com.google.common.primitives.Ints;
 
 /**
+ * stable sorts of indices by keys without boxing, the primitive variants sort {@link Double#NaN} last in both
+ * directions and use the shared fork join pool for inputs larger than a threshold
+ *
  * @author Samuel Gratzl
  *
  */
 public class IndexedSort {
+	/**
+	 * default number of elements, from which on the primitive variants sort in parallel
+	 */
+	public static final int DEFAULT_THRESHOLD = Parallel.DEFAULT_THRESHOLD;
+
 	public static <T extends Comparable<T>> int[] sortIndex(List<T> list) {
 		return sortIndex(list, Ordering.natural());
 	}
 
 	/**
 	 * sort the given list and return the sorted list of indices
-	 * 
+	 *
 	 * @param list
 	 * @param comparator
 	 * @return
 	 */
 	public static <T> int[] sortIndex(final List<T> list, final Comparator<? super T> comparator) {
-		final int size = list.size();
-		int[] indices = new int[size];
-		for (int i = 0; i < size; ++i)
-			indices[i] = i;
-		if (size <= 1)
-			return indices;
-
-		Collections.sort(Ints.asList(indices), new Comparator<Integer>() {
+		// sequential, as the comparator and the list don't need to be thread safe
+		return new IndexSorter() {
 			@Override
-			public int compare(Integer o1, Integer o2) {
-				return comparator.compare(list.get(o1.intValue()), list.get(o2.intValue()));
+			protected int compare(int a, int b) {
+				return comparator.compare(list.get(a), list.get(b));
 			}
-		});
+		}.sort(list.size(), Integer.MAX_VALUE);
+	}
 
-		return indices;
+	/**
+	 * stable sort of the indices of the given keys in ascending order, {@link Double#NaN} last
+	 *
+	 * @param keys
+	 * @return the sorted list of indices
+	 */
+	public static int[] sortIndex(double[] keys) {
+		return sortIndex(keys, true, DEFAULT_THRESHOLD);
+	}
+
+	public static int[] sortIndex(double[] keys, boolean ascending) {
+		return sortIndex(keys, ascending, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @param keys
+	 * @param ascending
+	 *            sort order, {@link Double#NaN} are last in both cases
+	 * @param threshold
+	 *            number of elements from which on the sort is done in parallel
+	 * @return the sorted list of indices
+	 */
+	public static int[] sortIndex(final double[] keys, final boolean ascending, int threshold) {
+		return new IndexSorter() {
+			@Override
+			protected int compare(int a, int b) {
+				final double ka = keys[a];
+				final double kb = keys[b];
+				if (ascending || Double.isNaN(ka) || Double.isNaN(kb))
+					return Double.compare(ka, kb);
+				return Double.compare(kb, ka);
+			}
+		}.sort(keys.length, threshold);
+	}
+
+	public static int[] sortIndex(float[] keys) {
+		return sortIndex(keys, true, DEFAULT_THRESHOLD);
+	}
+
+	public static int[] sortIndex(float[] keys, boolean ascending) {
+		return sortIndex(keys, ascending, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @see #sortIndex(double[], boolean, int)
+	 */
+	public static int[] sortIndex(final float[] keys, final boolean ascending, int threshold) {
+		return new IndexSorter() {
+			@Override
+			protected int compare(int a, int b) {
+				final float ka = keys[a];
+				final float kb = keys[b];
+				if (ascending || Float.isNaN(ka) || Float.isNaN(kb))
+					return Float.compare(ka, kb);
+				return Float.compare(kb, ka);
+			}
+		}.sort(keys.length, threshold);
+	}
+
+	public static int[] sortIndex(int[] keys) {
+		return sortIndex(keys, true, DEFAULT_THRESHOLD);
+	}
+
+	public static int[] sortIndex(int[] keys, boolean ascending) {
+		return sortIndex(keys, ascending, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * @see #sortIndex(double[], boolean, int)
+	 */
+	public static int[] sortIndex(final int[] keys, final boolean ascending, int threshold) {
+		return new IndexSorter() {
+			@Override
+			protected int compare(int a, int b) {
+				return ascending ? Integer.compare(keys[a], keys[b]) : Integer.compare(keys[b], keys[a]);
+			}
+		}.sort(keys.length, threshold);
+	}
+
+	/**
+	 * computes the dense ranks of the given list, i.e. equal elements get the same rank and the ranks are consecutive
+	 *
+	 * @param list
+	 * @param comparator
+	 * @return the rank of each element
+	 */
+	public static <T> double[] denseRanks(final List<T> list, final Comparator<? super T> comparator) {
+		int[] indices = sortIndex(list, comparator);
+		double[] ranks = new double[indices.length];
+		int rank = 0;
+		for (int i = 1; i < indices.length; ++i) {
+			if (comparator.compare(list.get(indices[i - 1]), list.get(indices[i])) != 0)
+				rank++;
+			ranks[indices[i]] = rank;
+		}
+		return ranks;
 	}
-}
 
+	/**
+	 * computes the fractional ranks of the given values, i.e. ranks starting with 1 and tied values get the mean of
+	 * their ranks. {@link Double#NaN} values are not ranked and stay {@link Double#NaN}
+	 *
+	 * @param values
+	 * @return the rank of each value
+	 */
+	public static double[] averageRanks(double[] values) {
+		final int size = values.length;
+		double[] ranks = new double[size];
+		int[] indices = sortIndex(values);
+		int i = 0;
+		while (i < size) {
+			final double v = values[indices[i]];
+			if (Double.isNaN(v)) { // NaN are sorted last
+				for (; i < size; ++i)
+					ranks[indices[i]] = Double.NaN;
+				break;
+			}
+			int end = i + 1;
+			while (end < size && values[indices[end]] == v)
+				end++;
+			// mean of the ranks i+1 ... end
+			final double rank = (i + 1 + end) * 0.5;
+			for (int j = i; j < end; ++j)
+				ranks[indices[j]] = rank;
+			i = end;
+		}
+		return ranks;
+	}
+}
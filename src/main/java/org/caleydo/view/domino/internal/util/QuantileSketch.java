@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.util;
+
+import java.util.Arrays;
+
+/**
+ * streaming quantile sketch with bounded memory based on KLL (Karnin, Lang, Liberty: Optimal Quantile Approximation
+ * in Streams).
+ *
+ * The values are collected in a hierarchy of compactors, in which level h holds values of weight 2^h. A full level is
+ * sorted and every other value is promoted to the next level. The capacities decrease geometrically for lower
+ * levels, such that the memory is about 3k values. As long as no compaction took place, i.e. for up to k values, the
+ * quantiles are exact.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class QuantileSketch {
+	public static final int DEFAULT_K = 256;
+	private static final int MIN_CAPACITY = 8;
+	private static final double DECAY = 2. / 3;
+	private static final long SEED = 0x2545F4914F6CDD1DL;
+
+	private final int k;
+	private float[][] levels = new float[1][];
+	private int[] sizes = new int[1];
+	private int depth = 1;
+	private long count = 0;
+	private long seed = SEED;
+
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * @param k
+	 *            accuracy parameter, the rank error is about 1.7/k
+	 */
+	public QuantileSketch(int k) {
+		this.k = Math.max(k, MIN_CAPACITY);
+		this.levels[0] = new float[this.k + 1];
+	}
+
+	/**
+	 * resets this sketch to be reused
+	 */
+	public void clear() {
+		Arrays.fill(sizes, 0);
+		depth = 1;
+		count = 0;
+		seed = SEED;
+	}
+
+	/**
+	 * @param v
+	 *            the value to add, {@link Float#NaN} values are ignored
+	 */
+	public void add(float v) {
+		if (Float.isNaN(v))
+			return;
+		if (sizes[0] == levels[0].length)
+			levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+		levels[0][sizes[0]++] = v;
+		count++;
+		if (sizes[0] > capacity(0))
+			compress();
+	}
+
+	/**
+	 * @return the number of non {@link Float#NaN} values added
+	 */
+	public long size() {
+		return count;
+	}
+
+	public boolean isExact() {
+		for (int h = 1; h < depth; ++h)
+			if (sizes[h] > 0)
+				return false;
+		return true;
+	}
+
+	private int capacity(int level) {
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth - 1 - level)));
+	}
+
+	/**
+	 * compacts all full levels bottom up
+	 */
+	private void compress() {
+		for (int h = 0; h < depth; ++h) {
+			if (sizes[h] <= capacity(h))
+				continue;
+			if (h + 1 >= depth)
+				grow();
+			final float[] level = levels[h];
+			int n = sizes[h];
+			Arrays.sort(level, 0, n);
+			// keep the largest value if odd, to compact pairs
+			final int pairs = n / 2;
+			final int offset = nextBit();
+			float[] next = levels[h + 1];
+			int m = sizes[h + 1];
+			if (next.length < m + pairs)
+				levels[h + 1] = next = Arrays.copyOf(next, Math.max(next.length * 2, m + pairs));
+			for (int i = 0; i < pairs; ++i)
+				next[m++] = level[2 * i + offset];
+			sizes[h + 1] = m;
+			if (n % 2 == 1)
+				level[0] = level[n - 1];
+			sizes[h] = n % 2;
+		}
+	}
+
+	private void grow() {
+		depth++;
+		if (depth > levels.length) {
+			levels = Arrays.copyOf(levels, depth);
+			sizes = Arrays.copyOf(sizes, depth);
+		}
+		if (levels[depth - 1] == null)
+			levels[depth - 1] = new float[capacity(depth - 1)];
+	}
+
+	/**
+	 * @return a pseudo random bit using xorshift, deterministic for reproducible results
+	 */
+	private int nextBit() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (int) (seed >>> 63);
+	}
+
+	/**
+	 * @param q
+	 *            the quantile in [0,1]
+	 * @return the estimated quantile or {@link Float#NaN} if empty, if exact linearly interpolated between the closest
+	 *         ranks
+	 */
+	public float quantile(double q) {
+		if (count == 0)
+			return Float.NaN;
+		q = Math.max(0, Math.min(1, q));
+		if (isExact())
+			return exact(q);
+		// collect all values with their weights
+		int total = 0;
+		for (int h = 0; h < depth; ++h)
+			total += sizes[h];
+		float[] values = new float[total];
+		long[] weights = new long[total];
+		int i = 0;
+		for (int h = 0; h < depth; ++h) {
+			for (int j = 0; j < sizes[h]; ++j) {
+				values[i] = levels[h][j];
+				weights[i++] = 1L << h;
+			}
+		}
+		int[] order = IndexedSort.sortIndex(values);
+		long weight = 0;
+		for (int w : order)
+			weight += weights[w];
+		final double target = q * weight;
+		long acc = 0;
+		for (int w : order) {
+			acc += weights[w];
+			if (acc >= target)
+				return values[w];
+		}
+		return values[order[order.length - 1]];
+	}
+
+	private float exact(double q) {
+		final float[] level = levels[0];
+		final int n = sizes[0];
+		Arrays.sort(level, 0, n);
+		final double pos = q * (n - 1);
+		final int lower = (int) Math.floor(pos);
+		final int upper = Math.min(n - 1, lower + 1);
+		final double frac = pos - lower;
+		return (float) (level[lower] + frac * (level[upper] - level[lower]));
+	}
+
+	@Override
+	public String toString() {
+		return "QuantileSketch [k=" + k + ", count=" + count + ", exact=" + isExact() + "]";
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.domino.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * compares the tiles of {@link RGBATiles} headless against the colors of the single cells
+ *
+ * Not part of the Tycho build, which just compiles <code>source..</code> of the build.properties. Run it as JUnit 4
+ * test within the IDE, with <code>src/test/java</code> as additional source folder and JUnit 4 on the build path.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public class RGBATilesTest {
+	private static final RGBATiles.ICells CELLS = new RGBATiles.ICells() {
+		@Override
+		public int rgba(int recordID, int dimensionID) {
+			return recordID * 0x9E3779B9 ^ dimensionID;
+		}
+	};
+
+	@Test
+	public void testSingleTile() {
+		compare(ids(10, 1), ids(7, 2), false);
+	}
+
+	@Test
+	public void testPartialTiles() {
+		compare(ids(RGBATiles.TILE * 2 + 5, 3), ids(RGBATiles.TILE + 1, 4), false);
+	}
+
+	@Test
+	public void testSwapped() {
+		compare(ids(RGBATiles.TILE * 2 + 5, 5), ids(RGBATiles.TILE + 1, 6), true);
+	}
+
+	@Test
+	public void testParallel() {
+		compare(ids(1000, 7), ids(300, 8), false);
+		compare(ids(1000, 9), ids(300, 10), true);
+	}
+
+	@Test
+	public void testEmpty() {
+		compare(new int[0], ids(10, 11), false);
+		compare(ids(10, 12), new int[0], false);
+	}
+
+	@Test
+	public void testCanFill() {
+		assertTrue(RGBATiles.canFill(8192, 8192));
+		assertFalse(RGBATiles.canFill(8193, 8192));
+		assertFalse(RGBATiles.canFill(65536, 65536));
+		assertFalse(RGBATiles.canFill(Integer.MAX_VALUE, 2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooSmall() {
+		RGBATiles.fill(ids(10, 13), ids(10, 14), false, CELLS, new int[99]);
+	}
+
+	private static void compare(int[] rows, int[] columns, boolean swapped) {
+		int[] target = new int[rows.length * columns.length];
+		RGBATiles.fill(rows, columns, swapped, CELLS, target);
+		for (int r = 0; r < rows.length; ++r)
+			for (int c = 0; c < columns.length; ++c) {
+				int expected = swapped ? CELLS.rgba(columns[c], rows[r]) : CELLS.rgba(rows[r], columns[c]);
+				assertEquals("cell " + r + "/" + c, expected, target[r * columns.length + c]);
+			}
+	}
+
+	/**
+	 * @return shuffled, sparse ids
+	 */
+	private static int[] ids(int size, long seed) {
+		Random r = new Random(seed);
+		int[] ids = new int[size];
+		for (int i = 0; i < size; ++i)
+			ids[i] = r.nextInt(1 << 20);
+		return ids;
+	}
+}